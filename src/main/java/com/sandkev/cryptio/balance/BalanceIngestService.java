@@ -1,93 +1,292 @@
 package com.sandkev.cryptio.balance;
 
+import com.sandkev.cryptio.events.ChangeEvents;
 import com.sandkev.cryptio.exchange.kraken.KrakenSpotPositionsService;
+import com.sandkev.cryptio.shared.Canonical;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
 
 @Slf4j
 @Service
 public class BalanceIngestService {
     private final JdbcTemplate jdbc;
-    private final BinanceSpotPositionsService binance;
-    private final KrakenSpotPositionsService kraken;
+    private final ChangeEvents events;
+    private final BalanceRefCache refs;
+    private final TransactionTemplate tx;
+    private final boolean deltaMode;
+    private final List<String> exchanges;
+    private final Duration fetchTimeout;
+    private final Map<String, Source> sources;
+    private final ExecutorService fetchPool = Executors.newVirtualThreadPerTaskExecutor();
+
+    private static final int BATCH_SIZE = 500;
+
+    /** Per-exchange outcome of {@link #refreshAll}; error is null on success. */
+    public record FetchReport(String exchange, long millis, int assets, String error) {
+        public boolean ok() { return error == null; }
+    }
+
+    /** Where an exchange's balances come from; kraken aliases are often uppercase, so they are stored lower. */
+    private record Source(Supplier<Map<String, BigDecimal>> fetch, boolean lowercaseAlias) {}
+
+    /** One exchange's fetched balances, waiting to be written. */
+    private record Fetched(String exchange, Map<String, BigDecimal> balances, boolean lowercaseAlias) {}
 
     public BalanceIngestService(JdbcTemplate jdbc,
                                 BinanceSpotPositionsService binance,
-                                KrakenSpotPositionsService kraken) {
+                                KrakenSpotPositionsService kraken,
+                                ChangeEvents events,
+                                BalanceRefCache refs,
+                                PlatformTransactionManager txManager,
+                                @Value("${cryptio.balances.delta-mode:true}") boolean deltaMode,
+                                @Value("${cryptio.balances.exchanges:binance,kraken}") List<String> exchanges,
+                                @Value("${cryptio.balances.fetch-timeout:20s}") Duration fetchTimeout) {
         this.jdbc = jdbc;
-        this.binance = binance;
-        this.kraken = kraken;
+        this.events = events;
+        this.refs = refs;
+        this.tx = new TransactionTemplate(txManager);
+        this.deltaMode = deltaMode;
+        this.exchanges = exchanges.stream().map(Canonical::exchange).filter(Objects::nonNull).toList();
+        this.fetchTimeout = fetchTimeout;
+        this.sources = Map.of(
+                "binance", new Source(binance::fetchSpotBalances, false),   // {BTC -> qty, ...}
+                "kraken",  new Source(kraken::fetchSpotBalances, true));    // already normalized (BTC, ETH, USD, etc.)
     }
 
     public void ingestBinance(String accountRef) {
-        Map<String, BigDecimal> balances = binance.fetchSpotBalances(); // {BTC -> qty, ...}
-        ingest("binance", accountRef, balances, /*lowercaseAlias*/ false);
+        write(accountRef, List.of(fetch("binance")));
     }
 
     public void ingestKraken(String accountRef) {
-        Map<String, BigDecimal> balances = kraken.fetchSpotBalances(); // already normalized (BTC, ETH, USD, etc.)
-        ingest("kraken", accountRef, balances, /*lowercaseAlias*/ true); // kraken aliases are often uppercase; we store lower
+        write(accountRef, List.of(fetch("kraken")));
     }
 
-    private void ingest(String exchangeCode, String accountRef, Map<String, BigDecimal> balances, boolean lowercaseAlias) {
-        Long exchangeId = jdbc.queryForObject("select id from exchange where code = ?", Long.class, exchangeCode);
-
-        // 1) ensure account (NO 'id' column in MERGE!)
-        jdbc.update("""
-        merge into exchange_account (exchange_id, account_ref, display_name, created_at)
-        key (exchange_id, account_ref)
-        values (?, ?, ?, current_timestamp)
-        """,
-                exchangeId, accountRef, accountRef
-        );
-
-        Long accountId = jdbc.queryForObject(
-                "select id from exchange_account where exchange_id=? and account_ref=?",
-                Long.class, exchangeId, accountRef
-        );
-
-        var asOf = java.sql.Timestamp.from(java.time.Instant.now());
-
-        log.info("saving {} rows of balances", balances.size());
-        for (var e : balances.entrySet()) {
-            String symbol = e.getKey();
-            java.math.BigDecimal total = e.getValue();
-            if (total == null || total.signum() == 0) continue;
-
-            // 2) upsert canonical asset (NO 'id' column)
-            jdbc.update("""
-            merge into asset (symbol, chain, contract, decimals)
-            key (symbol, chain, contract)
-            values (?, '', '', 18)
-            """, symbol
-            );
-
-            Long assetId = jdbc.queryForObject(
-                    "select id from asset where symbol=? and chain='' and contract=''", Long.class, symbol
-            );
-
-            // 3) upsert alias (store lowercase to match unique constraint)
-            String alias = lowercaseAlias ? symbol.toLowerCase(java.util.Locale.ROOT) : symbol;
-            jdbc.update("""
-            merge into asset_alias (exchange_id, alias, asset_id)
-            key (exchange_id, alias)
-            values (?, ?, ?)
-            """, exchangeId, alias, assetId
-            );
-
-            // 4) write snapshot (NO 'id' column)
-            // If you later split free/locked, change 0 to the appropriate value.
-            jdbc.update("""
-            merge into balance_snapshot (exchange_account_id, asset_id, exchange_symbol, free_amt, locked_amt, as_of, ingest_id, created_at)
-            key (exchange_account_id, asset_id, as_of)
-            values (?, ?, ?, ?, ?, ?, null, current_timestamp)
-            """,
-                    accountId, assetId, symbol, total, java.math.BigDecimal.ZERO, asOf
-            );
+    /**
+     * Fetch every configured exchange ({@code cryptio.balances.exchanges}) concurrently, each bounded by
+     * {@code cryptio.balances.fetch-timeout}, then write whatever arrived in one transaction.
+     * A slow or failing exchange is reported and skipped; it does not hold back the others.
+     */
+    public List<FetchReport> refreshAll(String accountRef) {
+        var pending = new LinkedHashMap<String, CompletableFuture<Map<String, BigDecimal>>>();
+        var millis = new ConcurrentHashMap<String, Long>();
+        for (String exchange : exchanges) {
+            if (!sources.containsKey(exchange)) {
+                log.warn("No balance source for configured exchange '{}'", exchange);
+                continue;
+            }
+            long t0 = System.nanoTime();
+            pending.put(exchange, CompletableFuture
+                    .supplyAsync(sources.get(exchange).fetch(), fetchPool)
+                    .orTimeout(fetchTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                    .whenComplete((r, e) -> millis.put(exchange, (System.nanoTime() - t0) / 1_000_000)));
         }
+
+        var reports = new ArrayList<FetchReport>();
+        var fetched = new ArrayList<Fetched>();
+        pending.forEach((exchange, f) -> {
+            try {
+                var balances = Objects.requireNonNullElse(f.join(), Map.<String, BigDecimal>of());
+                fetched.add(new Fetched(exchange, balances, sources.get(exchange).lowercaseAlias()));
+                reports.add(new FetchReport(exchange, millis.get(exchange), balances.size(), null));
+            } catch (CompletionException e) {
+                String error = e.getCause() instanceof TimeoutException
+                        ? "timed out after " + fetchTimeout
+                        : String.valueOf(e.getCause());
+                reports.add(new FetchReport(exchange, millis.get(exchange), 0, error));
+            }
+        });
+        write(accountRef, fetched);
+
+        reports.forEach(r -> {
+            if (r.ok()) log.info("Fetched {} balances from {} in {} ms", r.assets(), r.exchange(), r.millis());
+            else log.warn("Balance fetch from {} failed after {} ms: {}", r.exchange(), r.millis(), r.error());
+        });
+        return reports;
+    }
+
+    private Fetched fetch(String exchange) {
+        Source source = sources.get(exchange);
+        return new Fetched(exchange, source.fetch().get(), source.lowercaseAlias());
+    }
+
+    /**
+     * One transaction for all exchanges: ids come from {@link BalanceRefCache} (batched MERGE only on miss)
+     * and each account's current latest_balance rows are read once to diff against.
+     * In delta mode (default) only assets whose amounts changed get a snapshot row; assets that disappeared
+     * get a zero row and leave latest_balance. Every ingest records a balance_heartbeat, so the holdings at
+     * time t are the last snapshot row per asset at or before t, for any t covered by a heartbeat.
+     */
+    private void write(String account, List<Fetched> fetched) {
+        if (fetched.isEmpty()) return;
+        String accountRef = Canonical.account(account);
+        var asOf = Timestamp.from(Instant.now());
+
+        tx.executeWithoutResult(status -> {
+            var changed = new ArrayList<Held>();
+            var gone = new ArrayList<Held>();
+            var heartbeats = new ArrayList<Object[]>();
+            var written = new LinkedHashMap<String, List<String>>();
+
+            for (Fetched f : fetched) {
+                String exchangeCode = Canonical.exchange(f.exchange());
+                var current = new LinkedHashMap<String, BigDecimal>();
+                if (f.balances() != null) {
+                    f.balances().forEach((symbol, total) -> {
+                        if (total != null && total.signum() != 0) current.put(symbol, total);
+                    });
+                }
+
+                long exchangeId = refs.exchangeId(exchangeCode);
+                long accountId = refs.accountId(exchangeId, accountRef);
+                Map<Long, Held> previous = held(accountId);
+                // The clients answer Map.of() for a missing/empty body, which is indistinguishable from
+                // "sold everything"; never zero out an account on that. No heartbeat either, so it is retried.
+                if (current.isEmpty() && !previous.isEmpty()) {
+                    log.warn("{}/{}: fetch returned no balances but {} assets are held; skipping this exchange",
+                            exchangeCode, accountRef, previous.size());
+                    continue;
+                }
+                Map<String, Long> assetIds = refs.assetIds(current.keySet());
+
+                // aliases stored lowercase to match the unique constraint where the exchange needs it
+                var aliases = new LinkedHashMap<String, Long>();
+                assetIds.forEach((symbol, id) ->
+                        aliases.put(f.lowercaseAlias() ? symbol.toLowerCase(Locale.ROOT) : symbol, id));
+                refs.ensureAliases(exchangeId, aliases);
+
+                // If you later split free/locked, change 0 to the appropriate value.
+                int before = changed.size() + gone.size();
+                var symbols = new ArrayList<String>();
+                current.forEach((symbol, total) -> {
+                    var now = new Held(accountId, assetIds.get(symbol), symbol, total, BigDecimal.ZERO);
+                    if (!deltaMode || !now.sameAmounts(previous.get(now.assetId()))) {
+                        changed.add(now);
+                        symbols.add(symbol);
+                    }
+                });
+                var stillHeld = new HashSet<>(assetIds.values());
+                previous.values().forEach(h -> {
+                    if (!stillHeld.contains(h.assetId())) {
+                        gone.add(new Held(accountId, h.assetId(), h.symbol(), BigDecimal.ZERO, BigDecimal.ZERO));
+                        symbols.add(h.symbol());
+                    }
+                });
+                int rows = changed.size() + gone.size() - before;
+                heartbeats.add(new Object[]{accountId, asOf, current.size(), rows});
+                if (!symbols.isEmpty()) written.put(exchangeCode, symbols);
+                log.info("{}/{} balances: {} held, {} snapshot rows written", exchangeCode, accountRef, current.size(), rows);
+            }
+
+            var snapshot = new ArrayList<Held>(changed);
+            snapshot.addAll(gone);
+            writeSnapshot(snapshot, asOf);
+            upsertLatest(changed, asOf);
+            if (!gone.isEmpty()) {
+                jdbc.batchUpdate("delete from latest_balance where exchange_account_id=? and asset_id=?",
+                        gone, BATCH_SIZE, (ps, h) -> {
+                            ps.setLong(1, h.accountId());
+                            ps.setLong(2, h.assetId());
+                        });
+            }
+            jdbc.batchUpdate("""
+            insert into balance_heartbeat (exchange_account_id, as_of, asset_count, changed_count)
+            values (?, ?, ?, ?)
+            """, heartbeats);
+
+            written.forEach((exchangeCode, symbols) ->
+                    events.balancesWritten(exchangeCode, accountRef, symbols, asOf.toInstant()));
+        });
+    }
+
+    /** One asset's amounts for an account, as stored in latest_balance or about to be written. */
+    private record Held(long accountId, long assetId, String symbol, BigDecimal free, BigDecimal locked) {
+        boolean sameAmounts(Held other) {
+            return other != null && free.compareTo(other.free) == 0 && locked.compareTo(other.locked) == 0;
+        }
+    }
+
+    private Map<Long, Held> held(long accountId) {
+        var out = new HashMap<Long, Held>();
+        jdbc.query("select asset_id, exchange_symbol, free_amt, locked_amt from latest_balance where exchange_account_id=?",
+                rs -> {
+                    out.put(rs.getLong(1), new Held(accountId, rs.getLong(1), rs.getString(2), rs.getBigDecimal(3), rs.getBigDecimal(4)));
+                }, accountId);
+        return out;
+    }
+
+    // as_of is fresh, so (exchange_account_id, asset_id, as_of) cannot collide: plain insert.
+    private void writeSnapshot(List<Held> rows, Timestamp asOf) {
+        if (rows.isEmpty()) return;
+        jdbc.batchUpdate("""
+        insert into balance_snapshot (exchange_account_id, asset_id, exchange_symbol, free_amt, locked_amt, as_of, ingest_id, created_at)
+        values (?, ?, ?, ?, ?, ?, null, current_timestamp)
+        """, rows, BATCH_SIZE, (ps, h) -> {
+            ps.setLong(1, h.accountId());
+            ps.setLong(2, h.assetId());
+            ps.setString(3, h.symbol());
+            ps.setBigDecimal(4, h.free());
+            ps.setBigDecimal(5, h.locked());
+            ps.setTimestamp(6, asOf);
+        });
+    }
+
+    // keep latest_balance (behind v_latest_balance) in step; never move it backwards
+    private void upsertLatest(List<Held> rows, Timestamp asOf) {
+        if (rows.isEmpty()) return;
+        jdbc.batchUpdate("""
+        merge into latest_balance lb
+        using (select cast(? as bigint)         as exchange_account_id,
+                      cast(? as bigint)         as asset_id,
+                      cast(? as varchar(64))    as exchange_symbol,
+                      cast(? as numeric(38,18)) as free_amt,
+                      cast(? as numeric(38,18)) as locked_amt,
+                      cast(? as timestamp)      as as_of) s
+           on lb.exchange_account_id = s.exchange_account_id and lb.asset_id = s.asset_id
+         when matched and s.as_of >= lb.as_of then update set
+              exchange_symbol = s.exchange_symbol,
+              free_amt        = s.free_amt,
+              locked_amt      = s.locked_amt,
+              as_of           = s.as_of
+         when not matched then insert (exchange_account_id, asset_id, exchange_symbol, free_amt, locked_amt, as_of)
+              values (s.exchange_account_id, s.asset_id, s.exchange_symbol, s.free_amt, s.locked_amt, s.as_of)
+        """, rows, BATCH_SIZE, (ps, h) -> {
+            ps.setLong(1, h.accountId());
+            ps.setLong(2, h.assetId());
+            ps.setString(3, h.symbol());
+            ps.setBigDecimal(4, h.free());
+            ps.setBigDecimal(5, h.locked());
+            ps.setTimestamp(6, asOf);
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        fetchPool.shutdownNow();
     }
 }
@@ -0,0 +1,167 @@
+package com.sandkev.cryptio.balance;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Id lookups used by balance ingest: exchange code, exchange_account, asset (symbol with empty
+ * chain/contract) and the asset_alias rows already stored. Loaded once, filled on miss with batched
+ * MERGEs, so a warm ingest resolves every id without touching the database.
+ * Ids created inside a transaction are only visible to that transaction until it commits; they are
+ * merged into the shared maps after commit, so a rollback never leaves ids behind that do not exist.
+ */
+@Slf4j
+@Component
+public class BalanceRefCache {
+
+    /** Ids created by the current transaction, published to the shared maps once it commits. */
+    private static final class Pending {
+        final Map<String, Long> accountIds = new HashMap<>();
+        final Map<String, Long> assetIds = new HashMap<>();
+        final Map<String, Long> aliases = new HashMap<>();
+    }
+
+    private final JdbcTemplate jdbc;
+    private final Map<String, Long> exchangeIds = new HashMap<>();
+    private final Map<String, Long> accountIds = new HashMap<>();   // exchangeId|accountRef
+    private Map<String, Long> assetIds;                              // symbol -> id
+    private Map<String, Long> aliases;                               // exchangeId|alias -> asset id
+
+    public BalanceRefCache(JdbcTemplate jdbc) { this.jdbc = jdbc; }
+
+    public synchronized long exchangeId(String code) {
+        Long id = exchangeIds.get(code);
+        if (id == null) {
+            id = jdbc.queryForObject("select id from exchange where code = ?", Long.class, code);
+            exchangeIds.put(code, id);
+        }
+        return id;
+    }
+
+    /** Ensures the exchange_account row exists (NO 'id' column in MERGE!). */
+    public synchronized long accountId(long exchangeId, String accountRef) {
+        String key = exchangeId + "|" + accountRef;
+        var pending = pending();
+        Long id = accountIds.get(key);
+        if (id == null && pending != null) id = pending.accountIds.get(key);
+        if (id == null) {
+            jdbc.update("""
+            merge into exchange_account (exchange_id, account_ref, display_name, created_at)
+            key (exchange_id, account_ref)
+            values (?, ?, ?, current_timestamp)
+            """, exchangeId, accountRef, accountRef);
+            id = jdbc.queryForObject("select id from exchange_account where exchange_id=? and account_ref=?",
+                    Long.class, exchangeId, accountRef);
+            (pending != null ? pending.accountIds : accountIds).put(key, id);
+        }
+        return id;
+    }
+
+    /** symbol -> asset id for every requested symbol; missing assets are created in one batch. */
+    public synchronized Map<String, Long> assetIds(Collection<String> symbols) {
+        if (assetIds == null) assetIds = loadAssets();
+        var pending = pending();
+        var out = new LinkedHashMap<String, Long>();
+        List<String> missing = new ArrayList<>();
+        for (String s : symbols) {
+            Long id = assetIds.get(s);
+            if (id == null && pending != null) id = pending.assetIds.get(s);
+            if (id == null) missing.add(s);
+            out.put(s, id);
+        }
+        if (!missing.isEmpty()) {
+            jdbc.batchUpdate("""
+            merge into asset (symbol, chain, contract, decimals)
+            key (symbol, chain, contract)
+            values (?, '', '', 18)
+            """, missing.stream().map(s -> new Object[]{s}).toList());
+            var created = pending != null ? pending.assetIds : assetIds;
+            jdbc.query("select id, symbol from asset where chain='' and contract='' and symbol in ("
+                            + String.join(",", Collections.nCopies(missing.size(), "?")) + ")",
+                    rs -> {
+                        created.put(rs.getString(2), rs.getLong(1));
+                        out.put(rs.getString(2), rs.getLong(1));
+                    }, missing.toArray());
+        }
+        return out;
+    }
+
+    /**
+     * Ensures every alias -> asset id mapping exists for the exchange (aliases already stored lowercase if needed).
+     * An alias that now points at a different asset is merged again.
+     */
+    public synchronized void ensureAliases(long exchangeId, Map<String, Long> aliasToAssetId) {
+        if (aliases == null) aliases = loadAliases();
+        var pending = pending();
+        List<Object[]> missing = new ArrayList<>();
+        aliasToAssetId.forEach((alias, assetId) -> {
+            String key = exchangeId + "|" + alias;
+            Long stored = pending != null && pending.aliases.containsKey(key)
+                    ? pending.aliases.get(key) : aliases.get(key);
+            if (!assetId.equals(stored)) missing.add(new Object[]{exchangeId, alias, assetId});
+        });
+        if (missing.isEmpty()) return;
+        jdbc.batchUpdate("""
+        merge into asset_alias (exchange_id, alias, asset_id)
+        key (exchange_id, alias)
+        values (?, ?, ?)
+        """, missing);
+        var merged = pending != null ? pending.aliases : aliases;
+        for (Object[] m : missing) merged.put(m[0] + "|" + m[1], (Long) m[2]);
+    }
+
+    public synchronized void clear() {
+        exchangeIds.clear();
+        accountIds.clear();
+        assetIds = null;
+        aliases = null;
+    }
+
+    private Map<String, Long> loadAssets() {
+        var m = new HashMap<String, Long>();
+        jdbc.query("select id, symbol from asset where chain='' and contract=''",
+                rs -> { m.put(rs.getString(2), rs.getLong(1)); });
+        log.debug("Loaded {} asset ids", m.size());
+        return m;
+    }
+
+    private Map<String, Long> loadAliases() {
+        var m = new HashMap<String, Long>();
+        jdbc.query("select exchange_id, alias, asset_id from asset_alias",
+                rs -> { m.put(rs.getLong(1) + "|" + rs.getString(2), rs.getLong(3)); });
+        return m;
+    }
+
+    /** This transaction's pending ids (registering the publish-on-commit hook on first use); null outside one. */
+    private Pending pending() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) return null;
+        var pending = (Pending) TransactionSynchronizationManager.getResource(this);
+        if (pending != null) return pending;
+        var created = new Pending();
+        TransactionSynchronizationManager.bindResource(this, created);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override public void afterCommit() { publish(created); }
+            @Override public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(BalanceRefCache.this);
+            }
+        });
+        return created;
+    }
+
+    private synchronized void publish(Pending p) {
+        accountIds.putAll(p.accountIds);
+        if (assetIds != null) assetIds.putAll(p.assetIds);
+        if (aliases != null) aliases.putAll(p.aliases);
+    }
+}
@@ -0,0 +1,111 @@
+package com.sandkev.cryptio.balance;
+
+import com.sandkev.cryptio.portfolio.BalanceViewDao;
+import com.sandkev.cryptio.shared.Canonical;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Collectors;
+
+/**
+ * Stale-while-revalidate for balances: readers always get what is stored, and a background refresh
+ * (signed exchange calls + snapshot write) starts only when the account's snapshot is older than
+ * {@code cryptio.balances.max-age}. At most one refresh per account is in flight; within it the exchanges
+ * are fetched concurrently (see {@link BalanceIngestService#refreshAll}). A refresh that leaves the snapshot
+ * stale (exchange down, empty fetch) is not retried by page views for {@code cryptio.balances.retry-after}.
+ */
+@Slf4j
+@Service
+public class BalanceRefreshService {
+
+    private static final String DEFAULT_ACCOUNT = "primary";
+
+    private final BalanceIngestService ingest;
+    private final BalanceViewDao balances;
+    private final Duration maxAge;
+    private final Duration retryAfter;
+    private final Map<String, CompletableFuture<Void>> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, Instant> lastAttempt = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "balance-refresh");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public BalanceRefreshService(BalanceIngestService ingest, BalanceViewDao balances,
+                                 @Value("${cryptio.balances.max-age:5m}") Duration maxAge,
+                                 @Value("${cryptio.balances.retry-after:1m}") Duration retryAfter) {
+        this.ingest = ingest;
+        this.balances = balances;
+        this.maxAge = maxAge;
+        this.retryAfter = retryAfter;
+    }
+
+    /** Starts a background refresh if the stored snapshot is too old; true while one is running. */
+    public boolean refreshIfStale(String accountRef) {
+        String account = account(accountRef);
+        if (inFlight.containsKey(account)) return true;
+        var attempted = lastAttempt.get(account);
+        if (attempted != null && attempted.isAfter(Instant.now().minus(retryAfter))) return false;
+        boolean stale = balances.lastSnapshotAt(account)
+                .map(at -> at.isBefore(Instant.now().minus(maxAge)))
+                .orElse(true);
+        if (!stale) return false;
+        refresh(account);
+        return true;
+    }
+
+    /** Refresh now, or join the refresh already running for this account. */
+    public CompletableFuture<Void> refresh(String accountRef) {
+        String account = account(accountRef);
+        var future = new CompletableFuture<Void>();
+        var running = inFlight.putIfAbsent(account, future);
+        if (running != null) return running;
+        lastAttempt.put(account, Instant.now());
+        // started and cleaned up outside the map, so the removal never runs inside a mapping function
+        try {
+            CompletableFuture.runAsync(() -> ingestAll(account), executor).whenComplete((v, e) -> {
+                inFlight.remove(account, future);
+                if (e != null) future.completeExceptionally(e);
+                else future.complete(null);
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(account, future);
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /** Blank means the default account, as on the pages (and ConcurrentHashMap takes no null keys). */
+    private static String account(String accountRef) {
+        String account = Canonical.account(accountRef);
+        return account != null ? account : DEFAULT_ACCOUNT;
+    }
+
+    private void ingestAll(String account) {
+        long t0 = System.nanoTime();
+        try {
+            var reports = ingest.refreshAll(account);
+            log.info("Balance refresh for {} took {} ms ({})", account, (System.nanoTime() - t0) / 1_000_000,
+                    reports.stream().map(r -> r.exchange() + "=" + r.millis() + "ms" + (r.ok() ? "" : " failed"))
+                            .collect(Collectors.joining(", ")));
+        } catch (RuntimeException e) {
+            log.warn("Balance refresh for {} failed: {}", account, e.toString());
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,141 @@
+package com.sandkev.cryptio.balance;
+
+import com.sandkev.cryptio.ingest.IngestCheckpointDao;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Retention for balance_snapshot: full resolution for {@code cryptio.balances.retention.full} (default 7d),
+ * then the last snapshot per (account, asset, hour) up to {@code .hourly} (default 90d), then the last per day.
+ *
+ * Work is cut into one-day slices and each DELETE removes at most {@code .batch-size} rows in its own
+ * short transaction, so the table is never locked for long. How far each pass got is kept in
+ * ingest_checkpoint, so compacted slices are not rescanned, not even after a restart. balance_heartbeat is
+ * thinned on the same schedule (last per account and bucket); latest_balance is untouched.
+ *
+ * date_trunc buckets by the session time zone, which both drivers take from the JVM (H2 stores as_of as
+ * JVM-local wall time), so slices and cutoffs start at midnight in that zone too. A bucket then never
+ * straddles two slices.
+ */
+@Slf4j
+@Component
+public class BalanceRetentionJob {
+
+    /** %1$s table, %2$s partition columns besides the time bucket, %3$s bucket unit. */
+    private static final String DELETE = """
+        delete from %1$s
+         where id in (
+            select id from (
+                select t.id,
+                       row_number() over (
+                         partition by %2$s, date_trunc('%3$s', t.as_of)
+                         order by t.as_of desc, t.id desc
+                       ) rn
+                  from %1$s t
+                 where t.as_of >= ? and t.as_of < ?
+            ) x
+            where x.rn > 1
+            fetch first ? rows only
+         )
+        """;
+
+    private static final String ANY = "*";
+    private static final String HOURLY_DONE = "balance-retention-hour";
+    private static final String DAILY_DONE = "balance-retention-day";
+
+    private final JdbcTemplate jdbc;
+    private final IngestCheckpointDao checkpoints;
+    private final ZoneId zone = ZoneId.systemDefault();
+    private final Duration full;
+    private final Duration hourly;
+    private final int batchSize;
+
+    private Instant hourlyDoneUntil;   // [.., hourlyDoneUntil) already reduced to hourly
+    private Instant dailyDoneUntil;    // [.., dailyDoneUntil) already reduced to daily
+    private boolean resumed;
+
+    public BalanceRetentionJob(JdbcTemplate jdbc, IngestCheckpointDao checkpoints,
+                               @Value("${cryptio.balances.retention.full:7d}") Duration full,
+                               @Value("${cryptio.balances.retention.hourly:90d}") Duration hourly,
+                               @Value("${cryptio.balances.retention.batch-size:5000}") int batchSize) {
+        this.jdbc = jdbc;
+        this.checkpoints = checkpoints;
+        this.full = full;
+        this.hourly = hourly;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(initialDelayString = "${cryptio.balances.retention.initial-delay:PT5M}",
+               fixedDelayString = "${cryptio.balances.retention.interval:PT1H}")
+    public void run() {
+        compact(Instant.now());
+    }
+
+    /** @return snapshot + heartbeat rows deleted */
+    public synchronized long compact(Instant now) {
+        Timestamp oldestTs = jdbc.queryForObject("select min(as_of) from balance_snapshot", Timestamp.class);
+        if (oldestTs == null) return 0;
+        Instant oldest = oldestTs.toInstant();
+        if (!resumed) {
+            dailyDoneUntil = checkpoints.get(ANY, ANY, DAILY_DONE).orElse(null);
+            hourlyDoneUntil = checkpoints.get(ANY, ANY, HOURLY_DONE).orElse(null);
+            resumed = true;
+        }
+
+        Instant fullCutoff = startOfDay(now.minus(full)).toInstant();
+        Instant hourlyCutoff = startOfDay(now.minus(hourly)).toInstant();
+        long t0 = System.nanoTime();
+
+        Instant dailyFrom = dailyDoneUntil != null ? dailyDoneUntil : oldest;
+        long deleted = compactRange("day", dailyFrom, hourlyCutoff);
+        dailyDoneUntil = later(dailyFrom, hourlyCutoff);
+        checkpoints.put(ANY, ANY, DAILY_DONE, dailyDoneUntil, null);
+
+        Instant hourlyFrom = later(hourlyDoneUntil != null ? hourlyDoneUntil : oldest, hourlyCutoff);
+        deleted += compactRange("hour", hourlyFrom, fullCutoff);
+        hourlyDoneUntil = later(hourlyFrom, fullCutoff);
+        checkpoints.put(ANY, ANY, HOURLY_DONE, hourlyDoneUntil, null);
+
+        if (deleted > 0) {
+            log.info("Balance retention removed {} rows in {} ms", deleted, (System.nanoTime() - t0) / 1_000_000);
+        }
+        return deleted;
+    }
+
+    private long compactRange(String bucket, Instant from, Instant to) {
+        return compactSql(DELETE.formatted("balance_snapshot", "t.exchange_account_id, t.asset_id", bucket), from, to)
+                + compactSql(DELETE.formatted("balance_heartbeat", "t.exchange_account_id", bucket), from, to);
+    }
+
+    private long compactSql(String sql, Instant from, Instant to) {
+        long deleted = 0;
+        for (ZonedDateTime day = startOfDay(from); day.toInstant().isBefore(to); day = day.plusDays(1)) {
+            var start = Timestamp.from(day.toInstant());
+            var end = Timestamp.from(day.plusDays(1).toInstant());
+            int n;
+            do {
+                n = jdbc.update(sql, start, end, batchSize);
+                deleted += n;
+            } while (n == batchSize);
+        }
+        return deleted;
+    }
+
+    private ZonedDateTime startOfDay(Instant at) {
+        return at.atZone(zone).truncatedTo(ChronoUnit.DAYS);
+    }
+
+    private static Instant later(Instant a, Instant b) {
+        return a.isAfter(b) ? a : b;
+    }
+}
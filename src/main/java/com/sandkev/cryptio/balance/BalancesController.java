@@ -6,29 +6,34 @@ import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Instant;
+
 @Controller
 public class BalancesController {
 
     private final BalanceViewDao balances;
-    private final BalanceIngestService ingestService;
+    private final BalanceRefreshService refresher;
 
-    public BalancesController(BalanceViewDao balances, BalanceIngestService ingestService) {
+    public BalancesController(BalanceViewDao balances, BalanceRefreshService refresher) {
         this.balances = balances;
-        this.ingestService = ingestService;
+        this.refresher = refresher;
     }
 
     @GetMapping("/balances")
     public String balances(@RequestParam(required = false) String exchange,
                            @RequestParam(defaultValue = "primary") String account,
+                           @RequestParam(required = false) Instant at,
                            Model model) {
 
-        ingestService.ingestBinance(account);
-        ingestService.ingestKraken(account);
+        // serve what is stored; exchange calls happen in the background only when the snapshot is stale
+        boolean refreshing = at == null && refresher.refreshIfStale(account);
 
-        var rows = balances.latest(exchange, account);
+        var rows = at == null ? balances.latest(exchange, account) : balances.at(exchange, account, at);
         model.addAttribute("exchange", exchange);
         model.addAttribute("account", account);
         model.addAttribute("rows", rows); // fields: exchange, account, asset, free, locked, total, asOf
+        model.addAttribute("refreshing", refreshing);
+        model.addAttribute("at", at);
 
         return "balances";
     }
@@ -1,20 +1,48 @@
 // src/main/java/com/sandkev/cryptio/dashboard/web/DashboardApi.java
 package com.sandkev.cryptio.dashboard.web;
 
+import com.sandkev.cryptio.portfolio.PortfolioSeriesDao;
+import com.sandkev.cryptio.portfolio.PortfolioSeriesRecorder;
 import com.sandkev.cryptio.portfolio.PortfolioValuationService;
+import com.sandkev.cryptio.portfolio.SeriesResolution;
+import com.sandkev.cryptio.shared.Canonical;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.*;
 
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
+import java.util.Locale;
 
 @RestController
 @RequestMapping("/api")
 public class DashboardApi {
 
     private final PortfolioValuationService valuation;
+    private final PortfolioSeriesDao series;
+    private final PortfolioSeriesRecorder recorder;
 
-    public DashboardApi(PortfolioValuationService valuation) {
+    public DashboardApi(PortfolioValuationService valuation, PortfolioSeriesDao series, PortfolioSeriesRecorder recorder) {
         this.valuation = valuation;
+        this.series = series;
+        this.recorder = recorder;
+    }
+
+    /** Portfolio value over [from, to) at the finest stored resolution that fits in ~points buckets. */
+    @GetMapping("/dashboard/series")
+    public PortfolioSeriesDao.Series series(
+            @RequestParam(defaultValue = "primary") String account,
+            @RequestParam(defaultValue = "gbp") String vs,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @RequestParam(defaultValue = "500") int points
+    ) {
+        Instant end = to != null ? to : Instant.now();
+        Instant start = from != null ? from : end.minus(Duration.ofDays(365));
+        int max = Math.max(1, Math.min(points, 5_000));
+        var res = SeriesResolution.forRange(start, end, max, recorder.minuteFloor());
+        return series.series(Canonical.account(account), vs.toLowerCase(Locale.ROOT), res, start, end, max);
     }
 
     @GetMapping("/dashboard")
@@ -23,15 +51,14 @@ public class DashboardApi {
             @RequestParam(defaultValue = "gbp") String vs,
             @RequestParam(defaultValue = "total") String exchange // binance | kraken | total
     ) {
-        var totals = valuation.platformTotals(account, vs);
-        var grand = totals.stream().map(t -> t.value()).reduce(BigDecimal.ZERO, BigDecimal::add);
+        // one valuation per request; totals, top tokens and pie are slices of it
+        var snap = valuation.snapshot(account, vs);
+        var totals = snap.platformTotals();
+        var grand = snap.grandTotal();
 
         String exFilter = "total".equalsIgnoreCase(exchange) ? null : exchange.toLowerCase();
-
-        // These overloads take an optional exchange filter. If you don't have them yet,
-        // implement the filter inside these methods.
-        var top = valuation.topTokens(account, vs, 12, 0.01, exFilter);
-        var pie = valuation.pieData(account, vs, 0.02, exFilter);
+        var top = snap.topTokens(12, 0.01, exFilter);
+        var pie = snap.pie(0.02, exFilter);
 
         return new DashboardResponse(
                 totals.stream().map(t -> new PlatformTotal(t.platform(), t.value())).toList(),
@@ -37,12 +37,14 @@ public class DashboardController {
                             @RequestParam(defaultValue = "total") String exchange, // binance | kraken | total
                             Model model) {
 
-        var totals = valuation.platformTotals(account, vs);
-        BigDecimal grand = totals.stream().map(t -> t.value()).reduce(BigDecimal.ZERO, BigDecimal::add);
+        // one valuation per render; totals, top tokens and pie are slices of it
+        var snap = valuation.snapshot(account, vs);
+        var totals = snap.platformTotals();
+        BigDecimal grand = snap.grandTotal();
 
         String exFilter = "total".equalsIgnoreCase(exchange) ? null : exchange.toLowerCase();
-        var top = valuation.topTokens(account, vs, 12, 0.01, exFilter);
-        var pie = valuation.pieData(account, vs, 0.02, exFilter);
+        var top = snap.topTokens(12, 0.01, exFilter);
+        var pie = snap.pie(0.02, exFilter);
 
         model.addAttribute("account", account);
         model.addAttribute("vs", vs);
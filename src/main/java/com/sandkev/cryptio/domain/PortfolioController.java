@@ -1,6 +1,7 @@
 package com.sandkev.cryptio.domain;
 
-import com.sandkev.cryptio.tx.TxRepo;
+import com.sandkev.cryptio.shared.Canonical;
+import com.sandkev.cryptio.tx.TxWriter;
 import org.springframework.web.bind.annotation.*;
 
 import java.math.BigDecimal;
@@ -12,9 +13,9 @@ import java.util.Map;
 public class PortfolioController {
     private final PnlService pnl;
     private final HoldingRepo holdings;
-    private final TxRepo tx;
+    private final TxWriter tx;
 
-    public PortfolioController(PnlService pnl, HoldingRepo holdings, TxRepo tx) {
+    public PortfolioController(PnlService pnl, HoldingRepo holdings, TxWriter tx) {
         this.pnl = pnl;
         this.holdings = holdings;
         this.tx = tx;
@@ -26,6 +27,12 @@ public class PortfolioController {
         return pnl.compute(price); // pass prices from your price service in prod
     }
     @PostMapping("/tx")
-    Tx add(@RequestBody Tx t){ return tx.save(t); }
+    Tx add(@RequestBody Tx t){
+        t.setExchange(Canonical.exchange(t.getExchange()));
+        t.setAccountRef(Canonical.account(t.getAccountRef()));
+        // same path as ingest: idempotent on external id, keeps tx_position and the known-tx hashes in step
+        tx.write(t);
+        return t;
+    }
 }
 
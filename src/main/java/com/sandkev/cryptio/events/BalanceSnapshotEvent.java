@@ -0,0 +1,7 @@
+package com.sandkev.cryptio.events;
+
+import java.time.Instant;
+import java.util.Set;
+
+/** Published after commit when a balance snapshot was written for an account. */
+public record BalanceSnapshotEvent(String exchange, String accountRef, Set<String> assets, Instant asOf) {}
@@ -0,0 +1,129 @@
+package com.sandkev.cryptio.events;
+
+import com.sandkev.cryptio.tx.UpsertOutcome;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * In-process change bus for writers (TxWriterImpl, BalanceIngestService).
+ * Inside a transaction, changes are collected and published as one batch after commit (nothing on rollback);
+ * outside a transaction they are published straight away. A {@link #batched} scope widens the batch to
+ * everything committed on the calling thread until the scope closes (e.g. one ingest page of per-row
+ * upserts). Subscribers use plain {@code @EventListener} for {@link TxChangedEvent} /
+ * {@link BalanceSnapshotEvent} and can invalidate just the affected keys.
+ */
+@Component
+public class ChangeEvents {
+
+    private final ApplicationEventPublisher publisher;
+    private final ThreadLocal<Batch> scope = new ThreadLocal<>();
+
+    public ChangeEvents(ApplicationEventPublisher publisher) { this.publisher = publisher; }
+
+    /** A tx row touching {@code asset} was written; {@code from..to} covers its old and new ts. */
+    public void txWritten(String exchange, String accountRef, String asset, UpsertOutcome outcome, Instant from, Instant to) {
+        if (outcome == UpsertOutcome.UNCHANGED || asset == null) return;
+        Batch b = batch();
+        if (b == null) {
+            publisher.publishEvent(new TxChangedEvent(List.of(new TxChangedEvent.TxChange(exchange, accountRef, asset,
+                    from, to, outcome == UpsertOutcome.INSERTED ? 1 : 0, outcome == UpsertOutcome.UPDATED ? 1 : 0))));
+        } else {
+            b.add(exchange, accountRef, asset, outcome, from, to);
+        }
+    }
+
+    public void balancesWritten(String exchange, String accountRef, Collection<String> assets, Instant asOf) {
+        var event = new BalanceSnapshotEvent(exchange, accountRef, Set.copyOf(assets), asOf);
+        Batch b = batch();
+        if (b == null) publisher.publishEvent(event);
+        else b.balances.add(event);
+    }
+
+    /**
+     * Run {@code work} collecting every change committed on this thread meanwhile, and publish them as one
+     * batch when the outermost scope closes (also if {@code work} throws: what was committed stays committed).
+     */
+    public <T> T batched(Supplier<T> work) {
+        if (scope.get() != null) return work.get();
+        Batch b = new Batch();
+        scope.set(b);
+        try {
+            return work.get();
+        } finally {
+            scope.remove();
+            b.publish(publisher);
+        }
+    }
+
+    /** The current transaction's batch, else the open {@link #batched} scope, else null. */
+    private Batch batch() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) return scope.get();
+        Batch b = (Batch) TransactionSynchronizationManager.getResource(this);
+        if (b == null) {
+            Batch fresh = new Batch();
+            TransactionSynchronizationManager.bindResource(this, fresh);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override public void afterCommit() {
+                    Batch open = scope.get();
+                    if (open != null) open.addAll(fresh);
+                    else fresh.publish(publisher);
+                }
+                @Override public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(ChangeEvents.this);
+                }
+            });
+            b = fresh;
+        }
+        return b;
+    }
+
+    private record Key(String exchange, String accountRef, String asset) {}
+
+    private static final class Batch {
+        private final Map<Key, TxChangedEvent.TxChange> tx = new LinkedHashMap<>();
+        private final List<BalanceSnapshotEvent> balances = new ArrayList<>();
+
+        void add(String exchange, String accountRef, String asset, UpsertOutcome outcome, Instant from, Instant to) {
+            int ins = outcome == UpsertOutcome.INSERTED ? 1 : 0;
+            int upd = outcome == UpsertOutcome.UPDATED ? 1 : 0;
+            add(new TxChangedEvent.TxChange(exchange, accountRef, asset, from, to, ins, upd));
+        }
+
+        void addAll(Batch other) {
+            other.tx.values().forEach(this::add);
+            balances.addAll(other.balances);
+        }
+
+        private void add(TxChangedEvent.TxChange change) {
+            tx.merge(new Key(change.exchange(), change.accountRef(), change.asset()), change,
+                    (a, c) -> new TxChangedEvent.TxChange(a.exchange(), a.accountRef(), a.asset(),
+                            min(a.fromTs(), c.fromTs()), max(a.toTs(), c.toTs()),
+                            a.inserted() + c.inserted(), a.updated() + c.updated()));
+        }
+
+        void publish(ApplicationEventPublisher publisher) {
+            if (!tx.isEmpty()) publisher.publishEvent(new TxChangedEvent(List.copyOf(tx.values())));
+            balances.forEach(publisher::publishEvent);
+        }
+
+        private static Instant min(Instant a, Instant b) {
+            if (a == null || b == null) return a != null ? a : b;
+            return a.isBefore(b) ? a : b;
+        }
+        private static Instant max(Instant a, Instant b) {
+            if (a == null || b == null) return a != null ? a : b;
+            return a.isAfter(b) ? a : b;
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package com.sandkev.cryptio.events;
+
+import java.time.Instant;
+import java.util.Set;
+
+/** Published when fresh prices for these CoinGecko ids were fetched (vs currencies lowercase). */
+public record PricesRefreshedEvent(Set<String> coinIds, Set<String> vs, Instant at) {}
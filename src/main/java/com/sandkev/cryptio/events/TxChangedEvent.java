@@ -0,0 +1,15 @@
+package com.sandkev.cryptio.events;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Published after commit when tx rows were inserted or updated (unchanged rows are not reported).
+ * One {@link TxChange} per (exchange, accountRef, asset) touched in the transaction; the fee asset
+ * of a row counts as touched too, since it moves that asset's position.
+ */
+public record TxChangedEvent(List<TxChange> changes) {
+
+    public record TxChange(String exchange, String accountRef, String asset,
+                           Instant fromTs, Instant toTs, int inserted, int updated) {}
+}
@@ -49,10 +49,9 @@ public class BinanceConvertIngestService extends TimeWindowIngest<Map<String,Obj
         BigDecimal toAmount   = new BigDecimal(String.valueOf(r.get("toAmount")));
 
         var ts = Instant.ofEpochMilli(createTime);
-        int inserted = 0;
-        inserted += tx.upsert("binance", accountRef, fromAsset, "N/A", "CONVERT_OUT", fromAmount, null, null, null, ts, "convert:out:"+orderId);
-        inserted += tx.upsert("binance", accountRef, toAsset,   "N/A", "CONVERT_IN",  toAmount,   null, null, null, ts, "convert:in:"+orderId);
+        var out = tx.upsert("binance", accountRef, fromAsset, "N/A", "CONVERT_OUT", fromAmount, null, null, null, ts, "convert:out:"+orderId);
+        var in  = tx.upsert("binance", accountRef, toAsset,   "N/A", "CONVERT_IN",  toAmount,   null, null, null, ts, "convert:in:"+orderId);
 
-        return RowResult.many(inserted, createTime);
+        return RowResult.of(createTime, out, in);
     }
 }
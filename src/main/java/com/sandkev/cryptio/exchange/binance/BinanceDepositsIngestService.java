@@ -35,10 +35,10 @@ public class BinanceDepositsIngestService extends TimeWindowIngest<Map<String,Ob
         BigDecimal amt = new BigDecimal(String.valueOf(r.get("amount")));
         long insertTime = ((Number) r.get("insertTime")).longValue();
         String txId = String.valueOf(r.get("txId"));
-        int inserted = tx.upsert("binance", accountRef, coin, "N/A", "DEPOSIT",
+        var outcome = tx.upsert("binance", accountRef, coin, "N/A", "DEPOSIT",
                 amt, null, BigDecimal.ZERO, coin,
                 Instant.ofEpochMilli(insertTime),
                 "deposit:"+coin+":"+txId+":"+insertTime);
-        return RowResult.many(inserted, insertTime);
+        return RowResult.of(insertTime, outcome);
     }
 }
@@ -57,12 +57,11 @@ public class BinanceDustIngestService extends TimeWindowIngest<Map<String,Object
 
         var ts = Instant.ofEpochMilli(operateTime);
 
-        int inserted =0;
-        inserted += tx.upsert("binance", accountRef, fromAsset, "N/A", "CONVERT_OUT",
+        var out = tx.upsert("binance", accountRef, fromAsset, "N/A", "CONVERT_OUT",
                 amount, null, null, null, ts, "dust:out:"+fromAsset+":"+transId);
-        inserted += tx.upsert("binance", accountRef, "BNB", "N/A", "CONVERT_IN",
+        var in = tx.upsert("binance", accountRef, "BNB", "N/A", "CONVERT_IN",
                 bnbReceived, null, bnbFee, "BNB", ts, "dust:in:BNB:"+transId);
-        return RowResult.many(inserted, operateTime);
+        return RowResult.of(operateTime, out, in);
     }
 
     private static BigDecimal asBigDec(Object v) {
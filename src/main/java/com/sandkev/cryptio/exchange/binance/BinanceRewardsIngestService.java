@@ -43,10 +43,9 @@ public class BinanceRewardsIngestService extends TimeWindowIngest<Map<String,Obj
                 : r.get("id") != null ? String.valueOf(r.get("id"))
                 : asset + ":" + divTime;
 
-        int inserted =0;
-        inserted += tx.upsert("binance", accountRef, asset, "N/A", "REWARD",
+        var outcome = tx.upsert("binance", accountRef, asset, "N/A", "REWARD",
                 amount, null, BigDecimal.ZERO, null,
                 Instant.ofEpochMilli(divTime), "reward:"+asset+":"+id);
-        return RowResult.many(inserted, divTime);
+        return RowResult.of(divTime, outcome);
     }
 }
@@ -3,11 +3,16 @@ package com.sandkev.cryptio.exchange.binance;
 import com.sandkev.cryptio.balance.BinanceSignedClient;
 import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.math.BigDecimal;
+import java.time.Instant;
 import java.util.*;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class BinanceSymbolRegistry {
@@ -16,21 +21,45 @@ public class BinanceSymbolRegistry {
             new ParameterizedTypeReference<>() {};
     private static final List<String> QUOTES = List.of("USDT", "FDUSD", "USDC", "BTC");
 
+    /** Last price per spot symbol (BTCUSDT -> 64000.1) and when they were fetched. */
+    public record Tickers(Map<String, BigDecimal> prices, Instant at) {}
+
     private final BinanceSignedClient client;
 
     private volatile Set<String> spotSymbols = Set.of();
+    private volatile Tickers tickers = new Tickers(Map.of(), null);
 
     @PostConstruct
     public void load() {
-        // public endpoint, NO signing
-        List<Map<String,Object>> tickers = client.getPublic(
+        // public endpoint, NO signing; one call returns every spot symbol with its last price
+        List<Map<String,Object>> raw = client.getPublic(
                 "/api/v3/ticker/price", Map.of(), TICKER_LIST);
 
-        Set<String> symbols = tickers.stream()
+        var prices = new HashMap<String, BigDecimal>(raw.size() * 2);
+        for (var m : raw) {
+            var price = m.get("price") == null ? null : new BigDecimal(String.valueOf(m.get("price")));
+            // delisted symbols are still listed, at price 0
+            if (price != null && price.signum() > 0) prices.put(String.valueOf(m.get("symbol")), price);
+        }
+
+        this.spotSymbols = raw.stream()
                 .map(m -> String.valueOf(m.get("symbol")))
                 .collect(java.util.stream.Collectors.toUnmodifiableSet());
+        this.tickers = new Tickers(Map.copyOf(prices), Instant.now());
+    }
+
+    @Scheduled(initialDelayString = "${cryptio.prices.binance.interval:PT1M}",
+               fixedDelayString = "${cryptio.prices.binance.interval:PT1M}")
+    public void refresh() {
+        try {
+            load();
+        } catch (RuntimeException e) {
+            log.warn("Binance ticker refresh failed, keeping tickers from {}: {}", tickers.at(), e.toString());
+        }
+    }
 
-        this.spotSymbols = symbols;
+    public Tickers tickers() {
+        return tickers;
     }
 
     /** Exact pair like BTCUSDT */
@@ -37,11 +37,10 @@ public class BinanceSymbolTradesIngest extends IdCursorIngest<Map<String,Object>
         String base  = symbol.substring(0, symbol.length() - quoteLen(symbol));
         String quote = symbol.substring(base.length());
 
-        int inserted =0;
-        inserted += tx.upsert("binance", accountRef, base, quote, isBuyer ? "BUY" : "SELL",
+        var outcome = tx.upsert("binance", accountRef, base, quote, isBuyer ? "BUY" : "SELL",
                 qty, price, commission, commissionAsset, Instant.ofEpochMilli(time),
                 "trade:"+symbol+":"+id);
-        return RowResult.many(inserted, time);
+        return RowResult.of(time, outcome);
     }
     @Override protected long extractId(Map<String,Object> r) {
         return ((Number) r.get("id")).longValue();
@@ -37,10 +37,9 @@ public class BinanceWithdrawalsIngestService extends TimeWindowIngest<Map<String
         BigDecimal fee = new BigDecimal(String.valueOf(r.getOrDefault("transactionFee","0")));
         long ts = parseTime(String.valueOf(r.getOrDefault("applyTime", String.valueOf(System.currentTimeMillis()))));
 
-        int inserted =0;
-        inserted += tx.upsert("binance", accountRef, coin, "N/A", "WITHDRAW",
+        var outcome = tx.upsert("binance", accountRef, coin, "N/A", "WITHDRAW",
                 amt, null, fee, coin, Instant.ofEpochMilli(ts), "withdraw:"+id);
-        return RowResult.many(inserted, ts);
+        return RowResult.of(ts, outcome);
     }
 
     private static long parseTime(String s) {
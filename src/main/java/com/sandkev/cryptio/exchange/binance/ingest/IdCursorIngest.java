@@ -46,7 +46,7 @@ public abstract class IdCursorIngest<T> {
         startMs = Math.max(startMs, TRADE_HISTORY_START);//not before earliest possible start date
 
         Long fromId = null;
-        int inserted = 0;
+        int inserted = 0, updated = 0, unchanged = 0;
 
         for (int page = 0; page < 10_000; page++) {
             var p = new LinkedHashMap<String,Object>();
@@ -62,11 +62,15 @@ public abstract class IdCursorIngest<T> {
 
             long maxTs = startMs;
             long maxId = -1;
-            for (T r : rows) {
-                RowResult rr = handleRow(r, accountRef);
+            // one batch of change events per page rather than one per row
+            List<RowResult> results = tx.batch(() -> rows.stream().map(r -> handleRow(r, accountRef)).toList());
+            for (int i = 0; i < rows.size(); i++) {
+                RowResult rr = results.get(i);
                 inserted += rr.inserted();
+                updated += rr.updated();
+                unchanged += rr.unchanged();
                 if (rr.eventTsMillis() > 0) maxTs = Math.max(maxTs, rr.eventTsMillis());
-                long id = extractId(r);
+                long id = extractId(rows.get(i));
                 if (id >= 0) maxId = Math.max(maxId, id);
             }
             if (maxTs > startMs) {
@@ -76,6 +80,7 @@ public abstract class IdCursorIngest<T> {
             if (rows.size() < 1000 || maxId < 0) break;
             fromId = maxId + 1;
         }
+        log.info("Ingest '{}' for {}: inserted={}, updated={}, unchanged={}", kind(), accountRef, inserted, updated, unchanged);
         return inserted;
     }
 
@@ -1,7 +1,13 @@
 package com.sandkev.cryptio.exchange.binance.ingest;
 
+import com.sandkev.cryptio.tx.UpsertOutcome;
+
 /** Outcome of handling a single upstream row. */
-public record RowResult(int inserted, long eventTsMillis) {
+public record RowResult(int inserted, int updated, int unchanged, long eventTsMillis) {
+
+    public RowResult(int inserted, long eventTsMillis) {
+        this(inserted, 0, 0, eventTsMillis);
+    }
 
     public static RowResult skip(long tsMillis) {           // no insert (dup, etc.)
         return new RowResult(0, tsMillis);
@@ -12,4 +18,16 @@ public record RowResult(int inserted, long eventTsMillis) {
     public static RowResult many(int n, long tsMillis) {    // inserted n rows
         return new RowResult(n, tsMillis);
     }
+    /** Tally the upserts one upstream row produced. */
+    public static RowResult of(long tsMillis, UpsertOutcome... outcomes) {
+        int ins = 0, upd = 0, same = 0;
+        for (UpsertOutcome o : outcomes) {
+            switch (o) {
+                case INSERTED -> ins++;
+                case UPDATED -> upd++;
+                case UNCHANGED -> same++;
+            }
+        }
+        return new RowResult(ins, upd, same, tsMillis);
+    }
 }
@@ -52,7 +52,7 @@ public abstract class TimeWindowIngest<T> {
         startMs = Math.max(startMs, TRADE_HISTORY_START);//not before earliest possible start date
         final long now = System.currentTimeMillis();
 
-        int inserted = 0;
+        int inserted = 0, updated = 0, unchanged = 0;
         long windowStart = startMs;
 
         for (int page = 0; page < 10_000 && windowStart <= now; page++) {
@@ -69,9 +69,12 @@ public abstract class TimeWindowIngest<T> {
                 }
 
                 long maxTs = windowStart;
-                for (T r : rows) {
-                    RowResult rr = handleRow(r, accountRef);
+                // one batch of change events per window rather than one per row
+                List<RowResult> results = tx.batch(() -> rows.stream().map(r -> handleRow(r, accountRef)).toList());
+                for (RowResult rr : results) {
                     inserted += rr.inserted();
+                    updated += rr.updated();
+                    unchanged += rr.unchanged();
                     if (rr.eventTsMillis() > 0) {
                         maxTs = Math.max(maxTs, rr.eventTsMillis());
                     }
@@ -87,6 +90,7 @@ public abstract class TimeWindowIngest<T> {
                 windowStart = windowEnd + 1;
             }
         }
+        log.info("Ingest '{}' for {}: inserted={}, updated={}, unchanged={}", kind(), accountRef, inserted, updated, unchanged);
         return inserted;
     }
 
@@ -1,6 +1,7 @@
 // src/main/java/com/sandkev/cryptio/kraken/KrakenAssetUniverseDao.java
 package com.sandkev.cryptio.exchange.kraken;
 
+import com.sandkev.cryptio.shared.Canonical;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
 
@@ -16,19 +17,20 @@ public class KrakenAssetUniverseDao {
     /** Distinct assets for Kraken account from balances + tx history. */
     public Set<String> assetsForAccount(String accountRef) {
         var out = new LinkedHashSet<String>();
+        accountRef = Canonical.account(accountRef);
 
         // From current snapshot (view you already use elsewhere)
         List<String> snap = jdbc.query("""
             select distinct asset
             from v_latest_balance
-            where lower(exchange)='kraken' and account=?
+            where exchange='kraken' and account=?
         """, (rs,i) -> rs.getString(1), accountRef);
 
         // From tx base asset (anything we’ve ever seen)
         List<String> hist = jdbc.query("""
             select distinct base
             from tx
-            where lower(exchange)='kraken' and account_ref=?
+            where exchange='kraken' and account_ref=?
         """, (rs,i) -> rs.getString(1), accountRef);
 
         snap.stream().filter(s -> s!=null && !s.isBlank()).forEach(out::add);
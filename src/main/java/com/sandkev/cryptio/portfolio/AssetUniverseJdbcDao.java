@@ -1,6 +1,7 @@
 // src/main/java/com/sandkev/cryptio/portfolio/AssetUniverseDao.java
 package com.sandkev.cryptio.portfolio;
 
+import com.sandkev.cryptio.shared.Canonical;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
 
@@ -17,13 +18,15 @@ public class AssetUniverseJdbcDao implements AssetUniverseDao{
     /** Distinct assets for an exchange/account from latest snapshots + tx history. */
     public Set<String> assetsForAccount(String exchange, String accountRef) {
         var out = new LinkedHashSet<String>();
+        exchange = Canonical.exchange(exchange);
+        accountRef = Canonical.account(accountRef);
 
         // from latest snapshot view
         List<String> snap = jdbc.query(
                 """
                 select distinct asset
                 from v_latest_balance
-                where lower(exchange)=lower(?) and account=?
+                where exchange=? and account=?
                 """, (rs,i) -> rs.getString(1), exchange, accountRef);
 
         // from tx rows (base column)
@@ -31,7 +34,7 @@ public class AssetUniverseJdbcDao implements AssetUniverseDao{
                 """
                 select distinct base
                 from tx
-                where lower(exchange)=lower(?) and account_ref=?
+                where exchange=? and account_ref=?
                 """, (rs,i) -> rs.getString(1), exchange, accountRef);
 
         snap.stream().filter(s -> s!=null && !s.isBlank()).forEach(out::add);
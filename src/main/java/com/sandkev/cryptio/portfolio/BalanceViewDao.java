@@ -1,12 +1,15 @@
 // src/main/java/com/sandkev/cryptio/portfolio/BalanceViewDao.java
 package com.sandkev.cryptio.portfolio;
 
+import com.sandkev.cryptio.shared.Canonical;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
+import java.sql.Timestamp;
 import java.time.Instant;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public class BalanceViewDao {
@@ -19,14 +22,64 @@ public class BalanceViewDao {
         return jdbc.query("""
       select exchange, account, asset, free_amt, locked_amt, total_amt, as_of
       from v_latest_balance
-      where (? is null or lower(exchange)=lower(?))
+      where (? is null or exchange=?)
         and (? is null or account=?)
       order by exchange, asset
     """, (rs,i) -> new Row(
                 rs.getString(1), rs.getString(2), rs.getString(3),
                 rs.getBigDecimal(4), rs.getBigDecimal(5), rs.getBigDecimal(6),
                 rs.getTimestamp(7).toInstant()
-        ), nz(exchange), nz(exchange), nz(account), nz(account));
+        ), Canonical.exchange(exchange), Canonical.exchange(exchange), Canonical.account(account), Canonical.account(account));
+    }
+
+    /**
+     * Holdings as they were at {@code at}: per asset the last snapshot row at or before it, zero rows dropped.
+     * Snapshots are change-only, so inside the retention job's full-resolution window this matches what was
+     * held; further back history is thinned to hourly/daily, so changes within a bucket are not visible.
+     */
+    public List<Row> at(String exchange, String account, Instant at) {
+        return jdbc.query("""
+      select e.code, ea.account_ref, a.symbol, bs.free_amt, bs.locked_amt, (bs.free_amt + bs.locked_amt), bs.as_of
+      from balance_snapshot bs
+      join (
+        select s.exchange_account_id, s.asset_id, max(s.as_of) as as_of
+        from balance_snapshot s
+        join exchange_account sea on sea.id = s.exchange_account_id
+        join exchange se          on se.id  = sea.exchange_id
+        where s.as_of <= ?
+          and (? is null or se.code=?)
+          and (? is null or sea.account_ref=?)
+        group by s.exchange_account_id, s.asset_id
+      ) m on m.exchange_account_id = bs.exchange_account_id and m.asset_id = bs.asset_id and m.as_of = bs.as_of
+      join exchange_account ea on ea.id = bs.exchange_account_id
+      join exchange e           on e.id  = ea.exchange_id
+      join asset a              on a.id  = bs.asset_id
+      where (bs.free_amt + bs.locked_amt) <> 0
+      order by e.code, a.symbol
+    """, (rs,i) -> new Row(
+                rs.getString(1), rs.getString(2), rs.getString(3),
+                rs.getBigDecimal(4), rs.getBigDecimal(5), rs.getBigDecimal(6),
+                rs.getTimestamp(7).toInstant()
+        ), Timestamp.from(at), Canonical.exchange(exchange), Canonical.exchange(exchange), Canonical.account(account), Canonical.account(account));
+    }
+
+    /** Every account ref with an exchange account. */
+    public List<String> accounts() {
+        return jdbc.queryForList("select distinct account_ref from exchange_account where account_ref is not null order by account_ref",
+                String.class);
+    }
+
+    /** When the account's stalest exchange was last snapshotted (heartbeat, changed or not); empty if never. */
+    public Optional<Instant> lastSnapshotAt(String account) {
+        Timestamp ts = jdbc.queryForObject("""
+      select min(latest) from (
+        select max(hb.as_of) as latest
+        from balance_heartbeat hb
+        join exchange_account ea on ea.id = hb.exchange_account_id
+        where ea.account_ref = ?
+        group by hb.exchange_account_id
+      ) x
+    """, Timestamp.class, Canonical.account(account));
+        return Optional.ofNullable(ts).map(Timestamp::toInstant);
     }
-    private static String nz(String s){ return (s==null||s.isBlank())?null:s; }
 }
@@ -0,0 +1,107 @@
+package com.sandkev.cryptio.portfolio;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * portfolio_value_series: total portfolio value per (account, vs) rolled up into minute, hour and day
+ * buckets as samples arrive (close = latest sample, plus min/max). Reads are one primary-key range scan.
+ */
+@Repository
+public class PortfolioSeriesDao {
+
+    public record Point(Instant ts, BigDecimal value, BigDecimal min, BigDecimal max) {}
+    public record Series(String account, String vs, SeriesResolution resolution, List<Point> points) {}
+
+    private final JdbcTemplate jdbc;
+
+    public PortfolioSeriesDao(JdbcTemplate jdbc) { this.jdbc = jdbc; }
+
+    /** Fold one sample into its minute, hour and day buckets (one batch). */
+    public void record(String account, String vs, Instant ts, BigDecimal value) {
+        record(account, vs, ts, value, EnumSet.allOf(SeriesResolution.class));
+    }
+
+    /** Fold one sample into the buckets of the given resolutions only (e.g. DAY for backfilled history). */
+    public void record(String account, String vs, Instant ts, BigDecimal value, Set<SeriesResolution> resolutions) {
+        var rows = new ArrayList<Object[]>();
+        for (SeriesResolution r : resolutions) {
+            rows.add(new Object[]{account, vs, r.code, Timestamp.from(r.bucket(ts)), value, Timestamp.from(ts)});
+        }
+        jdbc.batchUpdate("""
+            merge into portfolio_value_series p
+            using (select cast(? as varchar(64))    as account_ref,
+                          cast(? as varchar(16))    as vs,
+                          cast(? as varchar(1))     as res,
+                          cast(? as timestamp)      as bucket_ts,
+                          cast(? as numeric(38,18)) as val,
+                          cast(? as timestamp)      as sample_ts) s
+               on p.account_ref = s.account_ref and p.vs = s.vs and p.res = s.res and p.bucket_ts = s.bucket_ts
+             when matched then update set
+                  close_value = case when s.sample_ts >= p.sample_ts then s.val else p.close_value end,
+                  sample_ts   = greatest(p.sample_ts, s.sample_ts),
+                  min_value   = least(p.min_value, s.val),
+                  max_value   = greatest(p.max_value, s.val),
+                  samples     = p.samples + 1
+             when not matched then insert (account_ref, vs, res, bucket_ts, close_value, min_value, max_value, sample_ts, samples)
+                  values (s.account_ref, s.vs, s.res, s.bucket_ts, s.val, s.val, s.val, s.sample_ts, 1)
+            """, rows);
+    }
+
+    /**
+     * Series for [from, to) at the given resolution, thinned to at most {@code maxPoints}
+     * (each kept point closes a run of consecutive buckets and carries that run's min/max).
+     */
+    public Series series(String account, String vs, SeriesResolution res, Instant from, Instant to, int maxPoints) {
+        var points = jdbc.query("""
+            select bucket_ts, close_value, min_value, max_value
+              from portfolio_value_series
+             where account_ref=? and vs=? and res=? and bucket_ts >= ? and bucket_ts < ?
+             order by bucket_ts
+            """, (rs, i) -> new Point(rs.getTimestamp(1).toInstant(), rs.getBigDecimal(2),
+                        rs.getBigDecimal(3), rs.getBigDecimal(4)),
+                account, vs, res.code, Timestamp.from(res.bucket(from)), Timestamp.from(to));
+        return new Series(account, vs, res, thin(points, maxPoints));
+    }
+
+    /** Bucket starts already stored for [from, to) at this resolution. */
+    public Set<Instant> buckets(String account, String vs, SeriesResolution res, Instant from, Instant to) {
+        return new HashSet<>(jdbc.query("""
+            select bucket_ts from portfolio_value_series
+             where account_ref=? and vs=? and res=? and bucket_ts >= ? and bucket_ts < ?
+            """, (rs, i) -> rs.getTimestamp(1).toInstant(),
+                account, vs, res.code, Timestamp.from(from), Timestamp.from(to)));
+    }
+
+    /** Drop minute buckets older than {@code before}; hour and day buckets are kept. */
+    public int trimMinutes(Instant before) {
+        return jdbc.update("delete from portfolio_value_series where res=? and bucket_ts < ?",
+                SeriesResolution.MINUTE.code, Timestamp.from(before));
+    }
+
+    static List<Point> thin(List<Point> points, int maxPoints) {
+        if (maxPoints <= 0 || points.size() <= maxPoints) return points;
+        int stride = (points.size() + maxPoints - 1) / maxPoints;
+        var out = new ArrayList<Point>(maxPoints);
+        for (int i = 0; i < points.size(); i += stride) {
+            var run = points.subList(i, Math.min(points.size(), i + stride));
+            BigDecimal min = run.getFirst().min(), max = run.getFirst().max();
+            for (Point p : run) {
+                min = min.min(p.min());
+                max = max.max(p.max());
+            }
+            Point last = run.getLast();
+            out.add(new Point(last.ts(), last.value(), min, max));
+        }
+        return out;
+    }
+}
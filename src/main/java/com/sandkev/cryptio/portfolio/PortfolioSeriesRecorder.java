@@ -0,0 +1,143 @@
+package com.sandkev.cryptio.portfolio;
+
+import com.sandkev.cryptio.events.BalanceSnapshotEvent;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Samples the total portfolio value into portfolio_value_series: every {@code cryptio.series.interval}
+ * (prices move) and whenever a balance snapshot is written (holdings move), for each currency in
+ * {@code cryptio.series.vs}. A sample is skipped when a held asset that should have a price has none, so an
+ * upstream gap never shows up as a dip. Minute buckets older than {@code cryptio.series.minute-retention} are
+ * trimmed. Missing days in the last {@code cryptio.series.backfill} are filled from balance snapshots and the
+ * local price history, once that history covers every asset held that day.
+ * Snapshot-driven samples run on their own thread, never on the ingest thread that published the event.
+ */
+@Slf4j
+@Component
+public class PortfolioSeriesRecorder {
+
+    private final PortfolioValuationService valuation;
+    private final PortfolioSeriesDao series;
+    private final BalanceViewDao balances;
+    private final List<String> vsList;
+    private final Duration minuteRetention;
+    private final Duration backfillWindow;
+
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "series-sample");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public PortfolioSeriesRecorder(PortfolioValuationService valuation, PortfolioSeriesDao series, BalanceViewDao balances,
+                                   @Value("${cryptio.series.vs:gbp}") List<String> vsList,
+                                   @Value("${cryptio.series.minute-retention:2d}") Duration minuteRetention,
+                                   @Value("${cryptio.series.backfill:365d}") Duration backfillWindow) {
+        this.valuation = valuation;
+        this.series = series;
+        this.balances = balances;
+        this.vsList = vsList;
+        this.minuteRetention = minuteRetention;
+        this.backfillWindow = backfillWindow;
+    }
+
+    public Instant minuteFloor() {
+        return Instant.now().minus(minuteRetention);
+    }
+
+    @Scheduled(initialDelayString = "${cryptio.series.initial-delay:PT1M}",
+               fixedDelayString = "${cryptio.series.interval:PT1M}")
+    public void sampleAll() {
+        for (String account : balances.accounts()) sample(account);
+        series.trimMinutes(minuteFloor());
+    }
+
+    /**
+     * Queues a sample for the account; several snapshots before it runs collapse into one.
+     * PortfolioValuationService.onBalances is ordered first, so the cached pre-write valuation is gone by then.
+     */
+    @EventListener
+    public void onSnapshot(BalanceSnapshotEvent e) {
+        String account = e.accountRef();
+        if (account == null || !pending.add(account)) return;
+        try {
+            worker.execute(() -> {
+                pending.remove(account);
+                sample(account);
+            });
+        } catch (RejectedExecutionException ex) {
+            pending.remove(account);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        worker.shutdownNow();
+    }
+
+    /** Fills day buckets missing from the backfill window; days without full price history are retried next run. */
+    @Scheduled(initialDelayString = "${cryptio.series.backfill-initial-delay:PT15M}",
+               fixedDelayString = "${cryptio.series.backfill-interval:PT6H}")
+    public void backfillAll() {
+        Instant today = SeriesResolution.DAY.bucket(Instant.now());
+        for (String account : balances.accounts()) {
+            for (String vs : vsList) {
+                try {
+                    int days = backfill(account, vs, today);
+                    if (days > 0) log.info("Backfilled {} days of portfolio value for {}/{}", days, account, vs);
+                } catch (RuntimeException ex) {
+                    log.warn("Portfolio value backfill for {}/{} failed: {}", account, vs, ex.toString());
+                }
+            }
+        }
+    }
+
+    /** One day-close sample per missing day before {@code today}; returns how many were written. */
+    int backfill(String account, String vs, Instant today) {
+        var day = SeriesResolution.DAY;
+        Instant from = day.bucket(today.minus(backfillWindow));
+        var have = series.buckets(account, vs, day, from, today);
+        int written = 0;
+        for (Instant d = from; d.isBefore(today); d = d.plus(day.step())) {
+            if (have.contains(d)) continue;
+            Instant close = d.plus(day.step()).minusSeconds(1);
+            var snap = valuation.snapshotAt(account, vs, close);
+            if (snap.rows().isEmpty() || !snap.complete()) continue;   // nothing held yet, or history not synced
+            series.record(account, vs, close, snap.grandTotal(), EnumSet.of(day));
+            written++;
+        }
+        return written;
+    }
+
+    private void sample(String account) {
+        Instant now = Instant.now();
+        for (String vs : vsList) {
+            try {
+                var snap = valuation.snapshot(account, vs);
+                if (!snap.complete()) {
+                    log.debug("Portfolio value sample for {}/{} skipped, no price for {}", account, vs, snap.unpriced());
+                    continue;
+                }
+                series.record(account, vs, now, snap.grandTotal());
+            } catch (RuntimeException ex) {
+                log.warn("Portfolio value sample for {}/{} failed: {}", account, vs, ex.toString());
+            }
+        }
+    }
+}
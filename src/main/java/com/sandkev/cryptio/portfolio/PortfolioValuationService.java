@@ -1,12 +1,26 @@
 package com.sandkev.cryptio.portfolio;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sandkev.cryptio.events.BalanceSnapshotEvent;
+import com.sandkev.cryptio.events.PricesRefreshedEvent;
+import com.sandkev.cryptio.price.BinanceTickerPrices;
+import com.sandkev.cryptio.price.CoinGeckoIdResolver;
 import com.sandkev.cryptio.price.CoinGeckoPriceService;
+import com.sandkev.cryptio.price.PriceHistoryService;
+import com.sandkev.cryptio.shared.Canonical;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
 import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
-import java.math.MathContext;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 @Service
@@ -14,10 +28,53 @@ public class PortfolioValuationService {
 
     private final BalanceViewDao balances;         // <-- use DAO, not JdbcTemplate
     private final CoinGeckoPriceService prices;
+    private final BinanceTickerPrices tickers;
+    private final CoinGeckoIdResolver ids;
+    private final PriceHistoryService history;
 
-    public PortfolioValuationService(BalanceViewDao balances, CoinGeckoPriceService prices) {
+    /**
+     * Valuations by (account, vs). Dropped when a snapshot is written for the account or when a price
+     * they used is refreshed afterwards (CoinGecko ids, or the Binance ticker snapshot); never served
+     * older than {@code cryptio.valuation.max-staleness}.
+     */
+    private final Cache<Key, Cached> cache;
+    private final Map<String, Instant> priceRefreshedAt = new ConcurrentHashMap<>();   // coinId|vs -> when
+    private final Map<String, Instant> balancesChangedAt = new ConcurrentHashMap<>();  // account -> when
+
+    private record Key(String account, String vs) {}
+    private record Cached(ValuationSnapshot snapshot, Set<String> coinIds, @Nullable Instant tickersAt) {}
+
+    public PortfolioValuationService(BalanceViewDao balances, CoinGeckoPriceService prices, BinanceTickerPrices tickers,
+                                     CoinGeckoIdResolver ids, PriceHistoryService history,
+                                     @Value("${cryptio.valuation.max-staleness:5m}") Duration maxStaleness) {
         this.balances = balances;
         this.prices = prices;
+        this.tickers = tickers;
+        this.ids = ids;
+        this.history = history;
+        this.cache = Caffeine.newBuilder()
+                .expireAfterWrite(maxStaleness)
+                .maximumSize(1_000)
+                .build();
+    }
+
+    /** Runs before other snapshot listeners, so anything they value already sees the new balances. */
+    @EventListener
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void onBalances(BalanceSnapshotEvent e) {
+        String account = Canonical.account(e.accountRef());
+        // also checked lazily in snapshot(): a valuation computing right now is not in the cache yet
+        if (account != null) balancesChangedAt.merge(account, Instant.now(), (a, b) -> a.isAfter(b) ? a : b);
+        // a null account key is the all-accounts valuation
+        cache.asMap().keySet().removeIf(k -> k.account() == null || k.account().equals(account));
+    }
+
+    @EventListener
+    public void onPrices(PricesRefreshedEvent e) {
+        // checked lazily in snapshot(): this can fire while a valuation is being computed
+        for (String id : e.coinIds()) {
+            for (String vs : e.vs()) priceRefreshedAt.merge(id + "|" + vs, e.at(), (a, b) -> a.isAfter(b) ? a : b);
+        }
     }
 
     /** Row we work with after pulling from DAO (canonical may be null). */
@@ -28,8 +85,6 @@ public class PortfolioValuationService {
     public record TokenSlice(String asset, BigDecimal value) {}
     public record PieData(List<String> labels, List<BigDecimal> values) {}
 
-    private static final MathContext MC = MathContext.DECIMAL64;
-
     /** Load latest balances for an account (via DAO), optionally filter by exchange. */
     private List<BalanceRow> loadLatestFromDao(String accountRef, @Nullable String exFilter) {
         // latestLeftJoin(exchangeOpt, account) -> rows with: exchange, account, asset (canonical), assetRaw, total
@@ -45,144 +100,117 @@ public class PortfolioValuationService {
                 .toList();
     }
 
-    /** Per-platform totals (in vs fiat). Unmapped assets contribute zero. */
-    public List<PlatformTotal> platformTotals(String accountRef, String vs) {
-        // No exchange filter here; totals want all platforms
-        var rows = loadLatestFromDao(accountRef, null);
-
-        // Only request prices for canonically-mapped symbols
-        var symbols = rows.stream()
-                .map(BalanceRow::assetCanonical)
-                .filter(Objects::nonNull)
-                .map(s -> s.toUpperCase(Locale.ROOT))
-                .collect(Collectors.toCollection(LinkedHashSet::new));
-
-        Map<String, BigDecimal> priceMap = priceBySymbol(symbols, vs);
-
-        Map<String, BigDecimal> byPlatform = new LinkedHashMap<>();
-        for (var r : rows) {
-            String platform = (r.platform() == null ? "unknown" : r.platform());
-            String sym = (r.assetCanonical() == null ? null : r.assetCanonical().toUpperCase(Locale.ROOT));
-
-            BigDecimal px = (sym == null) ? BigDecimal.ZERO : priceMap.getOrDefault(sym, BigDecimal.ZERO);
-            BigDecimal qty = (r.qty() == null ? BigDecimal.ZERO : r.qty());
-            BigDecimal value = qty.multiply(px, MC);
+    /**
+     * Value the account's latest balances once: one v_latest_balance read and one price lookup.
+     * Covers every platform; exchange filters are applied when slicing the snapshot.
+     */
+    public ValuationSnapshot snapshot(String accountRef, String vs) {
+        var key = new Key(Canonical.account(accountRef), vs.toLowerCase(Locale.ROOT));
+        var cached = cache.getIfPresent(key);
+        if (cached != null && (pricesMovedSince(cached, key.vs()) || balancesMovedSince(cached, key.account()))) {
+            cache.asMap().remove(key, cached);
+        }
+        return cache.get(key, this::value).snapshot();
+    }
 
-            byPlatform.merge(platform, value, BigDecimal::add);
+    /** A snapshot is stamped before its balances are read, so a write racing the valuation counts as newer. */
+    private boolean balancesMovedSince(Cached c, @Nullable String account) {
+        Instant at = c.snapshot().at();
+        if (account != null) {
+            Instant changed = balancesChangedAt.get(account);
+            return changed != null && !changed.isBefore(at);
         }
+        return balancesChangedAt.values().stream().anyMatch(changed -> !changed.isBefore(at));
+    }
 
-        return byPlatform.entrySet().stream()
-                .sorted(Map.Entry.comparingByKey())
-                .map(e -> new PlatformTotal(e.getKey(), e.getValue()))
-                .toList();
+    private boolean pricesMovedSince(Cached c, String vs) {
+        if (c.tickersAt() != null) {
+            Instant t = tickers.loadedAt();
+            if (t == null || t.isAfter(c.tickersAt())) return true;
+        }
+        for (String id : c.coinIds()) {
+            Instant at = priceRefreshedAt.get(id + "|" + vs);
+            if (at != null && at.isAfter(c.snapshot().at())) return true;
+        }
+        return false;
     }
 
-    /** Top N tokens by value (vs fiat). Unmapped assets are ignored (value=0). */
-    public List<TokenSlice> topTokens(String accountRef, String vs, int limit, Double minPct, @Nullable String exFilter) {
-        // IMPORTANT: filter once, then use the filtered list for everything downstream
-        var filteredRows = loadLatestFromDao(accountRef, normalizedExchangeFilter(exFilter));
+    private Cached value(Key key) {
+        Instant at = Instant.now();
+        var rows = loadLatestFromDao(key.account(), null);
 
-        var symbols = filteredRows.stream()
+        // Only request prices for canonically-mapped symbols
+        var symbols = rows.stream()
                 .map(BalanceRow::assetCanonical)
                 .filter(Objects::nonNull)
                 .map(s -> s.toUpperCase(Locale.ROOT))
                 .collect(Collectors.toCollection(LinkedHashSet::new));
 
-        Map<String, BigDecimal> priceMap = priceBySymbol(symbols, vs);
-
-        Map<String, BigDecimal> byAsset = new LinkedHashMap<>();
-        for (var r : filteredRows) {
-            if (r.assetCanonical() == null) continue; // unmapped → zero value, skip
-            String sym = r.assetCanonical().toUpperCase(Locale.ROOT);
-            BigDecimal px  = priceMap.getOrDefault(sym, BigDecimal.ZERO);
-            BigDecimal qty = (r.qty() == null ? BigDecimal.ZERO : r.qty());
-            BigDecimal value = qty.multiply(px, MC);
-            byAsset.merge(sym, value, BigDecimal::add);
-        }
-
-        BigDecimal grand = byAsset.values().stream().reduce(BigDecimal.ZERO, BigDecimal::add);
-        BigDecimal threshold =
-                (minPct != null && minPct > 0 && grand.signum() > 0)
-                        ? grand.multiply(BigDecimal.valueOf(minPct), MC)
-                        : BigDecimal.ZERO;
-
-        return byAsset.entrySet().stream()
-                .sorted(Map.Entry.<String, BigDecimal>comparingByValue().reversed())
-                .map(e -> new TokenSlice(e.getKey(), e.getValue()))
-                .filter(s -> s.value().compareTo(threshold) >= 0)
-                .limit(Math.max(1, limit))
-                .toList();
+        // Binance's bulk tickers first (local, one call for everything); CoinGecko only for the rest
+        Instant tickersAt = tickers.loadedAt();
+        var px = new LinkedHashMap<>(tickers.prices(symbols, key.vs()));
+        if (px.isEmpty()) tickersAt = null;
+        var rest = new LinkedHashSet<>(symbols);
+        rest.removeAll(px.keySet());
+
+        var symToId = geckoIds(rest);
+        var priceable = new HashSet<>(px.keySet());
+        priceable.addAll(symToId.keySet());
+        px.putAll(priceBySymbol(symToId, key.vs()));
+        var snap = ValuationSnapshot.of(key.account(), key.vs(), at, rows, px, priceable);
+        return new Cached(snap, Set.copyOf(symToId.values()), tickersAt);
     }
 
-    /** Pie data; unmapped assets contribute zero and are not labeled. */
-    public PieData pieData(String accountRef, String vs, double minPct, @Nullable String exFilter) {
-        var filteredRows = loadLatestFromDao(accountRef, normalizedExchangeFilter(exFilter));
-
-        var symbols = filteredRows.stream()
+    /**
+     * Value the holdings the account had at {@code at} with local price history (no upstream calls, not cached).
+     * Symbols the id index knows but history has no point for near {@code at} show up in {@code unpriced()}.
+     */
+    public ValuationSnapshot snapshotAt(String accountRef, String vs, Instant at) {
+        String account = Canonical.account(accountRef);
+        var rows = balances.at(null, account, at).stream()
+                .map(r -> new BalanceRow(r.exchange(), r.asset(), r.asset(), r.total()))
+                .toList();
+        var symbols = rows.stream()
                 .map(BalanceRow::assetCanonical)
                 .filter(Objects::nonNull)
                 .map(s -> s.toUpperCase(Locale.ROOT))
                 .collect(Collectors.toCollection(LinkedHashSet::new));
+        var symToId = geckoIds(symbols);
+        var idToPrice = history.pricesAt(new LinkedHashSet<>(symToId.values()), vs, at);
+        var px = new LinkedHashMap<String, BigDecimal>();
+        symToId.forEach((sym, id) -> {
+            var p = idToPrice.get(id);
+            if (p != null) px.put(sym, p);
+        });
+        return ValuationSnapshot.of(account, vs.toLowerCase(Locale.ROOT), at, rows, px, symToId.keySet());
+    }
 
-        Map<String, BigDecimal> priceMap = priceBySymbol(symbols, vs);
-
-        Map<String, BigDecimal> byAsset = new LinkedHashMap<>();
-        for (var r : filteredRows) {
-            if (r.assetCanonical() == null) continue; // unmapped → zero value, skip
-            String sym = r.assetCanonical().toUpperCase(Locale.ROOT);
-            BigDecimal px  = priceMap.getOrDefault(sym, BigDecimal.ZERO);
-            BigDecimal qty = (r.qty() == null ? BigDecimal.ZERO : r.qty());
-            BigDecimal value = qty.multiply(px, MC);
-            byAsset.merge(sym, value, BigDecimal::add);
-        }
-
-        BigDecimal grand = byAsset.values().stream().reduce(BigDecimal.ZERO, BigDecimal::add);
-        if (grand.signum() == 0) return new PieData(List.of(), List.of());
-
-        BigDecimal cutoff = grand.multiply(BigDecimal.valueOf(minPct), MC);
-
-        List<String> labels = new ArrayList<>();
-        List<BigDecimal> values = new ArrayList<>();
-        BigDecimal other = BigDecimal.ZERO;
+    /** Per-platform totals (in vs fiat). Unmapped assets contribute zero. */
+    public List<PlatformTotal> platformTotals(String accountRef, String vs) {
+        return snapshot(accountRef, vs).platformTotals();
+    }
 
-        var ordered = byAsset.entrySet().stream()
-                .sorted(Map.Entry.<String, BigDecimal>comparingByValue().reversed())
-                .toList();
+    /** Top N tokens by value (vs fiat). Unmapped assets are ignored (value=0). */
+    public List<TokenSlice> topTokens(String accountRef, String vs, int limit, Double minPct, @Nullable String exFilter) {
+        return snapshot(accountRef, vs).topTokens(limit, minPct, exFilter);
+    }
 
-        for (var e : ordered) {
-            if (e.getValue().compareTo(cutoff) >= 0) {
-                labels.add(e.getKey());
-                values.add(e.getValue());
-            } else {
-                other = other.add(e.getValue());
-            }
-        }
-        if (other.signum() > 0) {
-            labels.add("OTHER");
-            values.add(other);
-        }
-        return new PieData(labels, values);
+    /** Pie data; unmapped assets contribute zero and are not labeled. */
+    public PieData pieData(String accountRef, String vs, double minPct, @Nullable String exFilter) {
+        return snapshot(accountRef, vs).pie(minPct, exFilter);
     }
 
     // ==================== helpers ====================
 
-    /** Normalize exchange filter: null/blank/"total" → null; else lowercase. */
-    private static String normalizedExchangeFilter(@Nullable String exFilter) {
-        if (exFilter == null) return null;
-        if (exFilter.isBlank()) return null;
-        if ("total".equalsIgnoreCase(exFilter)) return null;
-        return exFilter.toLowerCase(Locale.ROOT);
+    /** SYMBOL -> CoinGecko id for the symbols the id index knows; the rest are never requested. */
+    private Map<String, String> geckoIds(Collection<String> symbols) {
+        Map<String, String> symToId = new LinkedHashMap<>();
+        for (String sym : symbols) ids.resolve(sym).ifPresent(id -> symToId.put(sym, id));
+        return symToId;
     }
 
     /** Fetch prices by canonical symbol; unmapped symbols are not requested. */
-    private Map<String, BigDecimal> priceBySymbol(Collection<String> symbols, String vs) {
-        if (symbols == null || symbols.isEmpty()) return Map.of();
-
-        Map<String, String> symToId = new LinkedHashMap<>();
-        for (String sym : symbols) {
-            String id = toGeckoId(sym);
-            if (id != null && !id.isBlank()) symToId.put(sym, id);
-        }
+    private Map<String, BigDecimal> priceBySymbol(Map<String, String> symToId, String vs) {
         if (symToId.isEmpty()) return Map.of();
 
         Map<String, BigDecimal> idToPrice =
@@ -196,57 +224,4 @@ public class PortfolioValuationService {
         }
         return out;
     }
-
-    /**
-     * Minimal symbol → CoinGecko ID mapping.
-     * Extend this map or fetch from DB/config. Fallback is lowercase symbol (best-effort).
-     */
-    private static String toGeckoId(String symbol) {
-        if (symbol == null || symbol.isBlank()) return null;
-        String sym = symbol.toUpperCase(Locale.ROOT);
-        // strip suffixes like ".F"
-        int dot = sym.indexOf('.');
-        if (dot > 0) sym = sym.substring(0, dot);
-
-        // common direct mappings
-        String id = STATIC_MAP.get(sym);
-        if (id != null) return id;
-
-        // fallback: lowercased symbol (works for many like BTC->btc? NO (bitcoin), ETH->eth? NO (ethereum))
-        // Better: maintain a proper map per your earlier config.
-        return FALLBACKS.getOrDefault(sym, sym.toLowerCase(Locale.ROOT));
-    }
-
-    // Populate with your earlier mapping list; a small starter set:
-    private static final Map<String, String> STATIC_MAP = Map.ofEntries(
-            Map.entry("BTC", "bitcoin"),
-            Map.entry("ETH", "ethereum"),
-            Map.entry("USDT", "tether"),
-            Map.entry("USDC", "usd-coin"),
-            Map.entry("BNB", "binancecoin"),
-            Map.entry("ADA", "cardano"),
-            Map.entry("XRP", "ripple"),
-            Map.entry("SOL", "solana"),
-            Map.entry("LTC", "litecoin"),
-            Map.entry("RUNE", "thorchain"),
-            Map.entry("LINK", "chainlink"),
-            Map.entry("DOT", "polkadot"),
-            Map.entry("AVAX", "avalanche-2"),
-            Map.entry("LUNA", "terra-luna"),
-            Map.entry("LUNC", "terra-luna-classic"),
-            Map.entry("MATIC", "matic-network"),
-            Map.entry("POL", "polygon-ecosystem-token"),
-            Map.entry("GLMR", "moonbeam"),
-            Map.entry("HDX", "hydradx"),
-            Map.entry("KSM", "kusama"),
-            Map.entry("SUPER", "superfarm"),       // SuperFarm
-            Map.entry("THETA", "theta-token"),
-            Map.entry("USD", "usd-coin"),          // treat as USD stablecoin
-            Map.entry("WELL", "moonwell-artemis"), // Moonwell (WELL)
-            Map.entry("MOVR", "moonriver")
-            // …extend as needed
-    );
-
-    // For assets where symbol==id in practice (rare); leave empty or add cases.
-    private static final Map<String, String> FALLBACKS = Map.of();
 }
@@ -1,5 +1,7 @@
 package com.sandkev.cryptio.portfolio;
 
+import com.sandkev.cryptio.shared.Canonical;
+import com.sandkev.cryptio.tx.TxPositionDao;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 
@@ -11,7 +13,11 @@ import java.util.stream.Collectors;
 public class ReconcileService {
 
     private final JdbcTemplate jdbc;
-    public ReconcileService(JdbcTemplate jdbc) { this.jdbc = jdbc; }
+    private final TxPositionDao positions;
+    public ReconcileService(JdbcTemplate jdbc, TxPositionDao positions) {
+        this.jdbc = jdbc;
+        this.positions = positions;
+    }
 
     /** Row for the UI: Snapshot vs Tx-derived and the Delta = Snapshot − Tx */
     public record Line(String asset, BigDecimal fromSnapshot, BigDecimal fromTx, BigDecimal delta) {}
@@ -28,39 +34,26 @@ public class ReconcileService {
      */
     public List<Line> lines(String accountRef, String platform,
                             BigDecimal minAbsDelta, String sort) {
-
-        // --- 1) Net quantity movements per asset (buys/deposits/rewards/convert_in add, sells/withdraw/convert_out subtract)
-        var qtyRows = jdbc.query("""
-            select base as asset,
-                   sum(case
-                         when type in ('BUY','DEPOSIT','CONVERT_IN','REWARD') then quantity
-                         when type in ('SELL','WITHDRAW','CONVERT_OUT')       then -quantity
-                         else 0
-                       end) as qty
-            from tx
-            where lower(exchange)=lower(?) and account_ref=?
-            group by base
-        """, (rs,i) -> new Object[]{ rs.getString(1), rs.getBigDecimal(2) }, platform, accountRef);
-
-        // --- 2) Total fees paid in each asset
-        var feeRows = jdbc.query("""
-            select fee_asset as asset, sum(coalesce(fee,0)) as fee_total
-            from tx
-            where lower(exchange)=lower(?) and account_ref=? and fee is not null and fee_asset is not null
-            group by fee_asset
-        """, (rs,i) -> new Object[]{ rs.getString(1), rs.getBigDecimal(2) }, platform, accountRef);
+        platform = Canonical.exchange(platform);
+        accountRef = Canonical.account(accountRef);
+
+        // --- 1+2) Net quantity movements and fees paid per asset, from the maintained tx_position aggregate
+        //          (buys/deposits/rewards/convert_in add, sells/withdraw/convert_out subtract)
+        var qtyMap = new HashMap<String, BigDecimal>();
+        var feeMap = new HashMap<String, BigDecimal>();
+        for (var p : positions.positions(platform, accountRef)) {
+            if (p.rowCount() > 0) qtyMap.put(p.asset(), nz(p.netQty()));
+            if (nz(p.feeTotal()).signum() != 0) feeMap.put(p.asset(), p.feeTotal());
+        }
 
         // --- 3) Ground truth snapshot (latest balance)
         var snapRows = jdbc.query("""
             select asset, sum(total_amt) as qty
             from v_latest_balance
-            where lower(exchange)=lower(?) and account=?
+            where exchange=? and account=?
             group by asset
         """, (rs,i) -> new Object[]{ rs.getString(1), rs.getBigDecimal(2) }, platform, accountRef);
 
-        // Build maps
-        var qtyMap  = toMap(qtyRows);
-        var feeMap  = toMap(feeRows);
         var snapMap = toMap(snapRows);
 
         // Union of all assets seen anywhere
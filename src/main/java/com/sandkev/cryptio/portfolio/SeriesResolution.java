@@ -0,0 +1,37 @@
+package com.sandkev.cryptio.portfolio;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+/** Bucket sizes kept in portfolio_value_series; {@link #code} is the stored res column. */
+public enum SeriesResolution {
+    MINUTE("m", ChronoUnit.MINUTES),
+    HOUR("h", ChronoUnit.HOURS),
+    DAY("d", ChronoUnit.DAYS);
+
+    public final String code;
+    private final ChronoUnit unit;
+
+    SeriesResolution(String code, ChronoUnit unit) {
+        this.code = code;
+        this.unit = unit;
+    }
+
+    public Instant bucket(Instant ts) { return ts.truncatedTo(unit); }
+
+    public Duration step() { return unit.getDuration(); }
+
+    /**
+     * Finest resolution that covers [from, to) in at most {@code maxPoints} buckets, falling back to DAY.
+     * MINUTE is only considered when the range starts after {@code minuteFloor} (minutes are trimmed).
+     */
+    public static SeriesResolution forRange(Instant from, Instant to, int maxPoints, Instant minuteFloor) {
+        Duration span = Duration.between(from, to);
+        for (SeriesResolution r : values()) {
+            if (r == MINUTE && from.isBefore(minuteFloor)) continue;
+            if (span.dividedBy(r.step()) <= maxPoints) return r;
+        }
+        return DAY;
+    }
+}
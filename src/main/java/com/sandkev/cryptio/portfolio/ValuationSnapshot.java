@@ -0,0 +1,178 @@
+package com.sandkev.cryptio.portfolio;
+
+import com.sandkev.cryptio.portfolio.PortfolioValuationService.PieData;
+import com.sandkev.cryptio.portfolio.PortfolioValuationService.PlatformTotal;
+import com.sandkev.cryptio.portfolio.PortfolioValuationService.TokenSlice;
+import org.springframework.lang.Nullable;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * One valuation of an account's latest balances in a vs currency: every row priced once, with
+ * per-platform totals and per-asset values (overall and per platform) pre-sorted.
+ * Dashboard totals, top tokens and pie are all cut from this in memory, whatever the exchange filter.
+ */
+public final class ValuationSnapshot {
+
+    /** A balance row with its price and value (both zero when unmapped/unpriced). */
+    public record ValuedRow(String platform, String asset, BigDecimal qty, BigDecimal price, BigDecimal value) {}
+
+    private static final MathContext MC = MathContext.DECIMAL64;
+    private static final Comparator<TokenSlice> BY_VALUE_DESC =
+            Comparator.comparing(TokenSlice::value).reversed();
+
+    private final String account;
+    private final String vs;
+    private final Instant at;
+    private final List<ValuedRow> rows;
+    private final List<PlatformTotal> platformTotals;
+    private final BigDecimal grandTotal;
+    private final List<TokenSlice> assets;                        // all platforms, value desc
+    private final Map<String, List<TokenSlice>> assetsByPlatform; // platform -> value desc
+    private final Set<String> unpriced;
+
+    private ValuationSnapshot(String account, String vs, Instant at, List<ValuedRow> rows, Set<String> unpriced) {
+        this.account = account;
+        this.vs = vs;
+        this.at = at;
+        this.rows = List.copyOf(rows);
+        this.unpriced = Set.copyOf(unpriced);
+
+        Map<String, BigDecimal> byPlatform = new TreeMap<>();
+        Map<String, BigDecimal> byAsset = new LinkedHashMap<>();
+        Map<String, Map<String, BigDecimal>> byPlatformAsset = new LinkedHashMap<>();
+        for (var r : rows) {
+            byPlatform.merge(r.platform(), r.value(), BigDecimal::add);
+            if (r.asset() == null) continue; // unmapped → zero value, not labelled
+            byAsset.merge(r.asset(), r.value(), BigDecimal::add);
+            byPlatformAsset.computeIfAbsent(r.platform(), p -> new LinkedHashMap<>())
+                    .merge(r.asset(), r.value(), BigDecimal::add);
+        }
+        this.platformTotals = byPlatform.entrySet().stream()
+                .map(e -> new PlatformTotal(e.getKey(), e.getValue()))
+                .toList();
+        this.grandTotal = byPlatform.values().stream().reduce(BigDecimal.ZERO, BigDecimal::add);
+        this.assets = sorted(byAsset);
+        var perPlatform = new LinkedHashMap<String, List<TokenSlice>>();
+        byPlatformAsset.forEach((p, m) -> perPlatform.put(p, sorted(m)));
+        this.assetsByPlatform = perPlatform;
+    }
+
+    /** Value every row with the given SYMBOL -> price map; missing prices count as zero. */
+    public static ValuationSnapshot of(String account, String vs,
+                                       List<PortfolioValuationService.BalanceRow> balances,
+                                       Map<String, BigDecimal> priceBySymbol) {
+        return of(account, vs, Instant.now(), balances, priceBySymbol, Set.of());
+    }
+
+    /**
+     * As above, valued as of {@code at}. Held symbols in {@code priceable} (those with a price source)
+     * that still got no positive price are reported by {@link #unpriced()}.
+     */
+    public static ValuationSnapshot of(String account, String vs, Instant at,
+                                       List<PortfolioValuationService.BalanceRow> balances,
+                                       Map<String, BigDecimal> priceBySymbol, Set<String> priceable) {
+        var rows = new ArrayList<ValuedRow>(balances.size());
+        var unpriced = new TreeSet<String>();
+        for (var b : balances) {
+            String platform = b.platform() == null ? "unknown" : b.platform();
+            String sym = b.assetCanonical() == null ? null : b.assetCanonical().toUpperCase(Locale.ROOT);
+            BigDecimal px = sym == null ? BigDecimal.ZERO : priceBySymbol.getOrDefault(sym, BigDecimal.ZERO);
+            BigDecimal qty = b.qty() == null ? BigDecimal.ZERO : b.qty();
+            if (sym != null && px.signum() <= 0 && qty.signum() != 0 && priceable.contains(sym)) unpriced.add(sym);
+            rows.add(new ValuedRow(platform, sym, qty, px, qty.multiply(px, MC)));
+        }
+        return new ValuationSnapshot(account, vs, at, rows, unpriced);
+    }
+
+    public String account() { return account; }
+    public String vs() { return vs; }
+    public Instant at() { return at; }
+    public List<ValuedRow> rows() { return rows; }
+
+    /** Per-platform totals, by platform name; never filtered. */
+    public List<PlatformTotal> platformTotals() { return platformTotals; }
+
+    public BigDecimal grandTotal() { return grandTotal; }
+
+    /** Held symbols that should have had a price but did not (upstream gap); the totals undercount them. */
+    public Set<String> unpriced() { return unpriced; }
+
+    /** True when every held, priceable symbol was priced. */
+    public boolean complete() { return unpriced.isEmpty(); }
+
+    /** Per-asset values, largest first; {@code exFilter} null/blank/"total" means all platforms. */
+    public List<TokenSlice> assets(@Nullable String exFilter) {
+        String p = normalizedExchangeFilter(exFilter);
+        return p == null ? assets : assetsByPlatform.getOrDefault(p, List.of());
+    }
+
+    /** Top N tokens by value; slices below minPct of the filtered total are dropped. */
+    public List<TokenSlice> topTokens(int limit, Double minPct, @Nullable String exFilter) {
+        var slices = assets(exFilter);
+        BigDecimal grand = total(slices);
+        BigDecimal threshold =
+                (minPct != null && minPct > 0 && grand.signum() > 0)
+                        ? grand.multiply(BigDecimal.valueOf(minPct), MC)
+                        : BigDecimal.ZERO;
+        return slices.stream()
+                .filter(s -> s.value().compareTo(threshold) >= 0)
+                .limit(Math.max(1, limit))
+                .toList();
+    }
+
+    /** Pie data: slices below minPct of the filtered total are folded into OTHER. */
+    public PieData pie(double minPct, @Nullable String exFilter) {
+        var slices = assets(exFilter);
+        BigDecimal grand = total(slices);
+        if (grand.signum() == 0) return new PieData(List.of(), List.of());
+
+        BigDecimal cutoff = grand.multiply(BigDecimal.valueOf(minPct), MC);
+        List<String> labels = new ArrayList<>();
+        List<BigDecimal> values = new ArrayList<>();
+        BigDecimal other = BigDecimal.ZERO;
+        for (var s : slices) {
+            if (s.value().compareTo(cutoff) >= 0) {
+                labels.add(s.asset());
+                values.add(s.value());
+            } else {
+                other = other.add(s.value());
+            }
+        }
+        if (other.signum() > 0) {
+            labels.add("OTHER");
+            values.add(other);
+        }
+        return new PieData(labels, values);
+    }
+
+    /** Normalize exchange filter: null/blank/"total" → null; else lowercase. */
+    static String normalizedExchangeFilter(@Nullable String exFilter) {
+        if (exFilter == null) return null;
+        if (exFilter.isBlank()) return null;
+        if ("total".equalsIgnoreCase(exFilter)) return null;
+        return exFilter.toLowerCase(Locale.ROOT);
+    }
+
+    private static List<TokenSlice> sorted(Map<String, BigDecimal> byAsset) {
+        return byAsset.entrySet().stream()
+                .map(e -> new TokenSlice(e.getKey(), e.getValue()))
+                .sorted(BY_VALUE_DESC)
+                .toList();
+    }
+
+    private static BigDecimal total(List<TokenSlice> slices) {
+        return slices.stream().map(TokenSlice::value).reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+}
@@ -0,0 +1,79 @@
+package com.sandkev.cryptio.price;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.socket.WebSocketMessage;
+import org.springframework.web.reactive.socket.client.ReactorNettyWebSocketClient;
+import org.springframework.web.reactive.socket.client.WebSocketClient;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binance all-market mini ticker (~1 update/s carrying every symbol that changed) over the combined
+ * stream endpoint. The subscription is part of the URL, so every reconnect resubscribes.
+ * Point {@code cryptio.prices.stream.url} at a local stub to test without Binance.
+ */
+@Component
+public class BinanceMiniTickerFeed implements PriceFeed {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private final WebSocketClient client;
+    private final URI uri;
+
+    public BinanceMiniTickerFeed(
+            @Value("${cryptio.prices.stream.url:wss://stream.binance.com:9443/stream?streams=!miniTicker@arr}") String url) {
+        this(new ReactorNettyWebSocketClient(), URI.create(url));
+    }
+
+    BinanceMiniTickerFeed(WebSocketClient client, URI uri) {
+        this.client = client;
+        this.uri = uri;
+    }
+
+    @Override
+    public String name() {
+        return "binance-miniTicker";
+    }
+
+    @Override
+    public Flux<PriceBook.PriceTick> connect() {
+        return Flux.create(sink -> {
+            var conn = client.execute(uri, session -> session.receive()
+                            .map(WebSocketMessage::getPayloadAsText)
+                            .doOnNext(text -> parse(text).forEach(sink::next))
+                            .then())
+                    .subscribe(null, sink::error, sink::complete);
+            sink.onDispose(conn);
+        });
+    }
+
+    /** Combined-stream envelope {"stream":..,"data":[..]} or a bare event / array of events. */
+    static List<PriceBook.PriceTick> parse(String text) {
+        JsonNode root;
+        try {
+            root = JSON.readTree(text);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        JsonNode data = root.has("data") ? root.get("data") : root;
+        var out = new ArrayList<PriceBook.PriceTick>(data.isArray() ? data.size() : 1);
+        if (data.isArray()) data.forEach(n -> addTick(n, out));
+        else addTick(data, out);
+        return out;
+    }
+
+    private static void addTick(JsonNode n, List<PriceBook.PriceTick> out) {
+        // s = symbol, c = close (last) price, E = event time
+        if (!n.hasNonNull("s") || !n.hasNonNull("c")) return;
+        out.add(new PriceBook.PriceTick(n.get("s").asText(), new BigDecimal(n.get("c").asText()), n.path("E").asLong()));
+    }
+}
@@ -0,0 +1,129 @@
+package com.sandkev.cryptio.price;
+
+import com.sandkev.cryptio.exchange.binance.BinanceSymbolRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Prices assets from Binance without I/O: the streamed {@link PriceBook} while it is live, falling back
+ * per symbol to the bulk ticker snapshot held by {@link BinanceSymbolRegistry}. A streamed price is only
+ * used if it arrived within max-age and after that snapshot was taken, so a symbol that stopped ticking
+ * never shadows a newer REST price. A direct ASSET/VS pair
+ * when listed, otherwise ASSET -> USDT (directly or via a USDC/FDUSD/BTC/ETH/BNB cross) divided by
+ * VS -> USDT. Assets Binance cannot price are left out for the caller to get from CoinGecko.
+ */
+@Component
+public class BinanceTickerPrices {
+
+    private static final MathContext MC = MathContext.DECIMAL64;
+    private static final String ANCHOR = "USDT";
+    private static final List<String> CROSSES = List.of("USDC", "FDUSD", "BTC", "ETH", "BNB");
+
+    private final BinanceSymbolRegistry registry;
+    private final PriceBook book;
+    private final boolean enabled;
+    private final Duration maxAge;
+    private final Duration revalueEvery;
+    private final String usdProxy;
+
+    public BinanceTickerPrices(BinanceSymbolRegistry registry, PriceBook book,
+                               @Value("${cryptio.prices.binance.enabled:true}") boolean enabled,
+                               @Value("${cryptio.prices.binance.max-age:5m}") Duration maxAge,
+                               @Value("${cryptio.prices.stream.revalue-every:15s}") Duration revalueEvery,
+                               @Value("${cryptio.prices.binance.usd-proxy:USDT}") String usdProxy) {
+        this.registry = registry;
+        this.book = book;
+        this.enabled = enabled;
+        this.maxAge = maxAge;
+        this.revalueEvery = revalueEvery;
+        this.usdProxy = usdProxy.toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * Version of the prices in use: the ticker snapshot time, or while the stream is live its last
+     * update rounded down to {@code revalue-every} (so cached valuations turn over at that pace,
+     * not on every tick). Null if neither source is usable.
+     */
+    public Instant loadedAt() {
+        var t = registry.tickers();
+        Instant at = usable(t.at()) ? t.at() : null;
+        Instant live = book.updatedAt();
+        if (usable(live)) {
+            long step = Math.max(1, revalueEvery.toMillis());
+            Instant bucket = Instant.ofEpochMilli(live.toEpochMilli() / step * step);
+            if (at == null || bucket.isAfter(at)) at = bucket;
+        }
+        return at;
+    }
+
+    /** SYMBOL -> price in {@code vs} for the symbols Binance lists; sources older than max-age are not used. */
+    public Map<String, BigDecimal> prices(Collection<String> symbols, String vs) {
+        if (symbols.isEmpty()) return Map.of();
+        var t = registry.tickers();
+        boolean rest = usable(t.at());
+        boolean live = usable(book.updatedAt()) && book.size() > 0;
+        if (!rest && !live) return Map.of();
+
+        Instant floor = Instant.now().minus(maxAge);
+        Instant liveAfter = rest && t.at().isAfter(floor) ? t.at() : floor;
+        Function<String, BigDecimal> px;
+        if (live && rest) px = s -> { var p = book.price(s, liveAfter); return p != null ? p : t.prices().get(s); };
+        else if (live) px = s -> book.price(s, liveAfter);
+        else px = t.prices()::get;
+
+        String v = vs.toUpperCase(Locale.ROOT);
+        return derive(px, symbols, "USD".equals(v) ? usdProxy : v);
+    }
+
+    private boolean usable(Instant at) {
+        return enabled && at != null && !at.isBefore(Instant.now().minus(maxAge));
+    }
+
+    static Map<String, BigDecimal> derive(Function<String, BigDecimal> tickers, Collection<String> symbols, String vs) {
+        BigDecimal vsInAnchor = inAnchor(tickers, vs);
+        var out = new LinkedHashMap<String, BigDecimal>();
+        for (String sym : symbols) {
+            String base = base(sym);
+            BigDecimal px = direct(tickers, base, vs);
+            if (px == null && vsInAnchor != null) {
+                BigDecimal a = inAnchor(tickers, base);
+                if (a != null) px = a.divide(vsInAnchor, MC);
+            }
+            if (px != null) out.put(sym, px);
+        }
+        return out;
+    }
+
+    private static BigDecimal direct(Function<String, BigDecimal> t, String base, String quote) {
+        if (base.equals(quote)) return BigDecimal.ONE;
+        BigDecimal d = t.apply(base + quote);
+        if (d != null) return d;
+        BigDecimal inv = t.apply(quote + base);
+        return inv != null ? BigDecimal.ONE.divide(inv, MC) : null;
+    }
+
+    private static BigDecimal inAnchor(Function<String, BigDecimal> t, String asset) {
+        BigDecimal d = direct(t, asset, ANCHOR);
+        if (d != null) return d;
+        for (String q : CROSSES) {
+            BigDecimal viaQ = t.apply(asset + q);
+            BigDecimal qInAnchor = viaQ == null ? null : direct(t, q, ANCHOR);
+            if (qInAnchor != null) return viaQ.multiply(qInAnchor, MC);
+        }
+        return null;
+    }
+
+    /** "ETH.F" -> "ETH" (Kraken staking variants trade as the base asset). */
+    private static String base(String symbol) {
+        String s = symbol.toUpperCase(Locale.ROOT);
+        int dot = s.indexOf('.');
+        return dot > 0 ? s.substring(0, dot) : s;
+    }
+}
@@ -0,0 +1,304 @@
+package com.sandkev.cryptio.price;
+
+import com.sandkev.cryptio.price.PriceService.CoinInfo;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * The CoinGecko /coins/list catalogue in a compact local file, memory-mapped rather than held as
+ * ~15k CoinInfo objects on the heap. Layout:
+ * <pre>
+ *   header   magic, version, count, dictSize (int), builtAt (long epoch millis)
+ *   records  count x (idRef, symbolRef, nameRef) ints, sorted by symbol then id -> the symbol index
+ *   offsets  (dictSize + 1) ints into the blob
+ *   blob     UTF-8 bytes of each distinct string once (dictionary encoding)
+ * </pre>
+ * Opening is a single mmap, so startup does not wait on CoinGecko. {@link #update} diffs a fresh
+ * download against the file and rewrites it only when something was added, removed or renamed.
+ */
+@Slf4j
+@Component
+public class CoinCatalogue implements Iterable<CoinInfo> {
+
+    public record Diff(int added, int removed, int changed) {
+        public boolean isEmpty() { return added == 0 && removed == 0 && changed == 0; }
+    }
+
+    private static final int MAGIC = 0x43474331;        // "CGC1"
+    private static final int VERSION = 1;
+    private static final int HEADER = 4 * 4 + 8;
+    private static final int RECORD = 3 * 4;
+
+    private final Path file;
+    private volatile View view = View.EMPTY;
+
+    public CoinCatalogue(@Value("${cryptio.coins.catalogue-file:${user.home}/.cryptio/coins.bin}") String file) {
+        this.file = Path.of(file);
+    }
+
+    @PostConstruct
+    public void open() {
+        if (!Files.isRegularFile(file)) return;
+        try (var ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            view = View.of(ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()));
+            log.info("Coin catalogue {}: {} coins, built {}", file, view.count, view.builtAt());
+        } catch (IOException | IllegalStateException e) {
+            log.warn("Coin catalogue {} unreadable, will rebuild on next update: {}", file, e.toString());
+        }
+    }
+
+    public int size() {
+        return view.count;
+    }
+
+    /** When the catalogue was last written; null if there is none yet. */
+    public Instant builtAt() {
+        return view.count == 0 ? null : view.builtAt();
+    }
+
+    /** All coins with this symbol (case-insensitive); a binary search over the mapped records. */
+    public List<CoinInfo> bySymbol(String symbol) {
+        if (symbol == null) return List.of();
+        var v = view;
+        byte[] key = symbol.trim().toLowerCase(Locale.ROOT).getBytes(StandardCharsets.UTF_8);
+        int lo = 0, hi = v.count;
+        while (lo < hi) {                               // lower bound
+            int mid = (lo + hi) >>> 1;
+            if (v.compare(v.ref(mid, 1), key) < 0) lo = mid + 1; else hi = mid;
+        }
+        var out = new ArrayList<CoinInfo>(2);
+        for (int i = lo; i < v.count && v.compare(v.ref(i, 1), key) == 0; i++) out.add(v.coin(i));
+        return out;
+    }
+
+    /** Decodes lazily from the mapped file; nothing is retained. */
+    @Override
+    public Iterator<CoinInfo> iterator() {
+        var v = view;
+        return new Iterator<>() {
+            int i = 0;
+            public boolean hasNext() { return i < v.count; }
+            public CoinInfo next() {
+                if (i >= v.count) throw new NoSuchElementException();
+                return v.coin(i++);
+            }
+        };
+    }
+
+    /**
+     * Apply a fresh /coins/list download; the file is rewritten only if the diff is non-empty. The download is
+     * sorted into file order and merge-walked against the mapped records, so no map of either side is built.
+     * A coin is matched on (symbol, id): a new name counts as changed, a new symbol as removed plus added.
+     */
+    public synchronized Diff update(List<CoinInfo> latest) throws IOException {
+        var fresh = new ArrayList<Keyed>(latest.size());
+        for (CoinInfo c : latest) {
+            if (c.id() == null || c.id().isBlank()) continue;
+            fresh.add(new Keyed(new CoinInfo(c.id(), c.symbol() == null ? "" : c.symbol().toLowerCase(Locale.ROOT),
+                    c.name() == null ? "" : c.name())));
+        }
+        fresh.sort(Keyed.ORDER);
+
+        var v = view;
+        var coins = new ArrayList<CoinInfo>(fresh.size());
+        int i = 0, added = 0, removed = 0, changed = 0;
+        Keyed prev = null;
+        for (Keyed f : fresh) {
+            if (prev != null && Keyed.ORDER.compare(prev, f) == 0) continue;       // listed twice
+            prev = f;
+            coins.add(f.coin());
+            while (i < v.count && v.compareKey(i, f.symbol(), f.id()) < 0) {
+                removed++;
+                i++;
+            }
+            if (i < v.count && v.compareKey(i, f.symbol(), f.id()) == 0) {
+                if (v.compare(v.ref(i, 2), f.coin().name().getBytes(StandardCharsets.UTF_8)) != 0) changed++;
+                i++;
+            } else {
+                added++;
+            }
+        }
+        removed += v.count - i;
+        var diff = new Diff(added, removed, changed);
+        if (diff.isEmpty() && v.count > 0) return diff;
+
+        ByteBuffer encoded = encode(coins, Instant.now());
+        view = View.of(persist(encoded));
+        log.info("Coin catalogue updated: +{} -{} ~{} ({} coins, {} bytes)",
+                diff.added(), diff.removed(), diff.changed(), view.count, encoded.capacity());
+        return diff;
+    }
+
+    /** A coin with its UTF-8 sort key, in the (symbol, id) byte order the file uses. */
+    private record Keyed(CoinInfo coin, byte[] symbol, byte[] id) {
+        static final Comparator<Keyed> ORDER = (a, b) -> {
+            int c = Arrays.compareUnsigned(a.symbol, b.symbol);
+            return c != 0 ? c : Arrays.compareUnsigned(a.id, b.id);
+        };
+
+        Keyed(CoinInfo coin) {
+            this(coin, coin.symbol().getBytes(StandardCharsets.UTF_8), coin.id().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /** Write next to the target and swap in atomically; if the swap fails keep serving from memory. */
+    private ByteBuffer persist(ByteBuffer encoded) throws IOException {
+        Path dir = file.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+        try {
+            try (var ch = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                ch.write(encoded.duplicate());
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // e.g. Windows will not replace a file that is still mapped
+            Files.deleteIfExists(tmp);
+            log.warn("Coin catalogue {} not replaced, serving the update from memory: {}", file, e.toString());
+            return encoded.asReadOnlyBuffer();
+        }
+        try (var ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            return ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        }
+    }
+
+    static ByteBuffer encode(Collection<CoinInfo> coins, Instant builtAt) {
+        var dict = new LinkedHashMap<String, Integer>();
+        var recs = new ArrayList<int[]>(coins.size());
+        var keys = new ArrayList<byte[][]>(coins.size());
+        for (CoinInfo c : coins) {
+            int id = dict.computeIfAbsent(c.id(), k -> dict.size());
+            int sym = dict.computeIfAbsent(c.symbol(), k -> dict.size());
+            int name = dict.computeIfAbsent(c.name(), k -> dict.size());
+            recs.add(new int[]{id, sym, name});
+            keys.add(new byte[][]{c.symbol().getBytes(StandardCharsets.UTF_8), c.id().getBytes(StandardCharsets.UTF_8)});
+        }
+        // sort record positions by (symbol, id) bytes: the order bySymbol's binary search relies on
+        var order = new Integer[recs.size()];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> {
+            int c = Arrays.compareUnsigned(keys.get(a)[0], keys.get(b)[0]);
+            return c != 0 ? c : Arrays.compareUnsigned(keys.get(a)[1], keys.get(b)[1]);
+        });
+
+        var strings = new byte[dict.size()][];
+        int blobSize = 0;
+        for (var e : dict.entrySet()) {
+            strings[e.getValue()] = e.getKey().getBytes(StandardCharsets.UTF_8);
+            blobSize += strings[e.getValue()].length;
+        }
+
+        var buf = ByteBuffer.allocate(HEADER + RECORD * recs.size() + 4 * (dict.size() + 1) + blobSize);
+        buf.putInt(MAGIC).putInt(VERSION).putInt(recs.size()).putInt(dict.size()).putLong(builtAt.toEpochMilli());
+        for (Integer i : order) {
+            int[] r = recs.get(i);
+            buf.putInt(r[0]).putInt(r[1]).putInt(r[2]);
+        }
+        int off = 0;
+        for (byte[] s : strings) {
+            buf.putInt(off);
+            off += s.length;
+        }
+        buf.putInt(off);
+        for (byte[] s : strings) buf.put(s);
+        return buf.flip();
+    }
+
+    /** Read-only view over an encoded catalogue (mapped file or heap); absolute reads only, so thread-safe. */
+    static final class View {
+
+        static final View EMPTY = new View(ByteBuffer.allocate(0), 0, 0);
+
+        final ByteBuffer buf;
+        final int count;
+        final int offsetsAt;
+        final int blobAt;
+
+        private View(ByteBuffer buf, int count, int dictSize) {
+            this.buf = buf;
+            this.count = count;
+            this.offsetsAt = HEADER + RECORD * count;
+            this.blobAt = offsetsAt + 4 * (dictSize + 1);
+        }
+
+        /** Checks the header against the buffer size, so a truncated or corrupt file is rejected, not read past. */
+        static View of(ByteBuffer buf) {
+            if (buf.capacity() < HEADER || buf.getInt(0) != MAGIC || buf.getInt(4) != VERSION) {
+                throw new IllegalStateException("not a coin catalogue (v" + VERSION + ")");
+            }
+            int count = buf.getInt(8), dictSize = buf.getInt(12);
+            long blobAt = HEADER + (long) RECORD * count + 4L * (dictSize + 1L);
+            if (count < 0 || dictSize < 0 || blobAt > buf.capacity()) {
+                throw new IllegalStateException("coin catalogue truncated: " + count + " coins, " + dictSize
+                        + " strings do not fit in " + buf.capacity() + " bytes");
+            }
+            var view = new View(buf, count, dictSize);
+            int blobSize = buf.getInt(view.offsetsAt + 4 * dictSize);
+            if (blobSize < 0 || blobAt + blobSize > buf.capacity()) {
+                throw new IllegalStateException("coin catalogue truncated: string blob ends past " + buf.capacity() + " bytes");
+            }
+            for (int d = 0, prev = 0; d <= dictSize; d++) {
+                int off = buf.getInt(view.offsetsAt + 4 * d);
+                if (off < prev) throw new IllegalStateException("coin catalogue corrupt at string " + d);
+                prev = off;
+            }
+            for (int i = 0; i < count; i++) {
+                for (int f = 0; f < 3; f++) {
+                    int ref = view.ref(i, f);
+                    if (ref < 0 || ref >= dictSize) throw new IllegalStateException("coin catalogue corrupt at record " + i);
+                }
+            }
+            return view;
+        }
+
+        Instant builtAt() {
+            return Instant.ofEpochMilli(buf.getLong(16));
+        }
+
+        /** field 0 = id, 1 = symbol, 2 = name */
+        int ref(int record, int field) {
+            return buf.getInt(HEADER + RECORD * record + 4 * field);
+        }
+
+        String string(int ref) {
+            int start = buf.getInt(offsetsAt + 4 * ref), end = buf.getInt(offsetsAt + 4 * ref + 4);
+            var bytes = new byte[end - start];
+            buf.get(blobAt + start, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        /** Record {@code record} against a (symbol, id) key in file order. */
+        int compareKey(int record, byte[] symbol, byte[] id) {
+            int c = compare(ref(record, 1), symbol);
+            return c != 0 ? c : compare(ref(record, 0), id);
+        }
+
+        /** Unsigned byte comparison of a dictionary string with {@code key}, without decoding it. */
+        int compare(int ref, byte[] key) {
+            int start = buf.getInt(offsetsAt + 4 * ref), len = buf.getInt(offsetsAt + 4 * ref + 4) - start;
+            int n = Math.min(len, key.length);
+            for (int i = 0; i < n; i++) {
+                int c = Byte.compareUnsigned(buf.get(blobAt + start + i), key[i]);
+                if (c != 0) return c;
+            }
+            return Integer.compare(len, key.length);
+        }
+
+        CoinInfo coin(int record) {
+            return new CoinInfo(string(ref(record, 0)), string(ref(record, 1)), string(ref(record, 2)));
+        }
+    }
+}
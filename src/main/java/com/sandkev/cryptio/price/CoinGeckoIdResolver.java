@@ -1,18 +1,37 @@
 package com.sandkev.cryptio.price;
 
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * Resolves symbols like BTC -> coin ids like "bitcoin".
- * Starts with a small known map and learns as you add assets.
+ * Resolves symbols like BTC -> coin ids like "bitcoin"; the one symbol index every valuation path uses.
+ * Curated and configured ({@code cryptio.coins.overrides=SYM=id,...}) overrides win; then symbols several
+ * coins share map to the one with the best market-cap rank, or failing that to the only one that is not a
+ * wrapped/bridged/staked copy. Shared symbols neither decides stay unresolved and are logged once when
+ * looked up, for curation through the overrides. Only overrides and decided picks are held on the heap and persisted
+ * in coin_id_index (rebuilt every {@code cryptio.coins.index-refresh}); a symbol only one coin uses is looked
+ * up in the mapped {@link CoinCatalogue}. Symbols neither knows resolve to empty rather than a guessed id.
  */
+@Slf4j
 @Component
 public class CoinGeckoIdResolver {
 
-    // Seed common ids; extend as needed
+    // Curated overrides: these win over anything derived from /coins/list
     private static final Map<String, String> WELL_KNOWN = Map.ofEntries(
             Map.entry("BTC", "bitcoin"),
             Map.entry("ETH", "ethereum"),
@@ -44,6 +63,8 @@ public class CoinGeckoIdResolver {
             Map.entry("LTC", "litecoin"),
             Map.entry("LUNA", "terra-luna"),        // legacy Terra
             Map.entry("LUNA2", "terra-luna-2"),     // Terra 2.0
+            Map.entry("LUNC", "terra-luna-classic"),
+            Map.entry("MATIC", "matic-network"),
             Map.entry("MOVR", "moonriver"),
             Map.entry("POL", "polygon-ecosystem-token"), // POL (Polygon upgrade token)
             Map.entry("POL.F", "polygon-ecosystem-token"),
@@ -61,16 +82,194 @@ public class CoinGeckoIdResolver {
             Map.entry("XLM", "stellar")
     );
 
-    private final Map<String, String> cache = new ConcurrentHashMap<>(WELL_KNOWN);
+    /** Coins ranked by market cap when picking among duplicate symbols; anything lower counts as unranked. */
+    private static final int RANKED = 1000;
+
+    // Wrapped/bridged/pegged copies reuse the symbol of the real coin; matched as whole '-' separated
+    // words of the id, so coins such as "pegaxy" or "bridge-oracle" are not mistaken for copies
+    private static final Set<String> DERIVATIVE_MARKERS =
+            Set.of("wrapped", "bridged", "pegged", "wormhole", "iou", "staked");
+
+    record Entry(String coinId, String source) {}
+
+    private final PriceService prices;
+    private final CoinCatalogue catalogue;
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+    private final Duration refreshEvery;
+    private final Map<String, String> overrides;
+
+    private final Map<String, String> learned = new ConcurrentHashMap<>();
+    private final Set<String> reportedShared = ConcurrentHashMap.newKeySet();
+    private volatile Map<String, Entry> index;
+
+    public CoinGeckoIdResolver(PriceService prices, CoinCatalogue catalogue, JdbcTemplate jdbc,
+                               PlatformTransactionManager txManager,
+                               @Value("${cryptio.coins.overrides:}") String overrides,
+                               @Value("${cryptio.coins.index-refresh:P1D}") Duration refreshEvery) {
+        this.prices = prices;
+        this.catalogue = catalogue;
+        this.jdbc = jdbc;
+        this.tx = new TransactionTemplate(txManager);
+        this.refreshEvery = refreshEvery;
+        var o = new HashMap<>(WELL_KNOWN);
+        o.putAll(parseOverrides(overrides));
+        this.overrides = Map.copyOf(o);
+        this.index = seedIndex(this.overrides);
+    }
 
     public Optional<String> resolve(String symbol) {
-        if (symbol == null) return Optional.empty();
-        return Optional.ofNullable(cache.get(symbol.toUpperCase(Locale.ROOT)));
+        if (symbol == null || symbol.isBlank()) return Optional.empty();
+        String sym = symbol.trim().toUpperCase(Locale.ROOT);
+        String id = lookup(sym);
+        if (id == null) {
+            int dot = sym.indexOf('.');                 // Kraken staking variants: ETH.F -> ETH
+            if (dot > 0) id = lookup(sym.substring(0, dot));
+        }
+        return Optional.ofNullable(id);
+    }
+
+    private String lookup(String sym) {
+        String id = learned.get(sym);
+        if (id != null) return id;
+        Entry e = index.get(sym);
+        if (e != null) return e.coinId();
+        var coins = catalogue.bySymbol(sym);
+        if (coins.size() == 1) return coins.getFirst().id();
+        if (coins.size() > 1 && reportedShared.add(sym)) {         // shared and undecided by the index
+            log.warn("Symbol {} is shared by {} unranked coins and left unpriced; pick one with cryptio.coins.overrides={}=<id> ({})",
+                    sym, coins.size(), sym, coins.stream().map(PriceService.CoinInfo::id).limit(10).toList());
+        }
+        return null;
     }
 
     public void learn(String symbol, String coinId) {
         if (symbol != null && coinId != null) {
-            cache.put(symbol.toUpperCase(Locale.ROOT), coinId);
+            learned.put(symbol.toUpperCase(Locale.ROOT), coinId);
+        }
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadPersisted() {
+        var rows = new HashMap<String, Entry>();
+        jdbc.query("select symbol, coin_id, source from coin_id_index",
+                rs -> { rows.put(rs.getString(1), new Entry(rs.getString(2), rs.getString(3))); });
+        if (rows.isEmpty()) {
+            // fresh database but a catalogue on disk: index it now (unranked) rather than wait for the rebuild
+            if (catalogue.size() > 0) index = build(catalogue, List.of(), overrides);
+            return;
+        }
+        rows.putAll(seedIndex(overrides));              // overrides may have changed since the last build
+        index = Map.copyOf(rows);
+        log.info("Coin id index loaded: {} symbols", rows.size());
+    }
+
+    @Scheduled(initialDelayString = "${cryptio.coins.index-initial-delay:PT30S}",
+               fixedDelayString = "${cryptio.coins.index-refresh:P1D}")
+    public void refreshIfStale() {
+        Timestamp builtAt = jdbc.queryForObject("select max(updated_at) from coin_id_index", Timestamp.class);
+        boolean fresh = builtAt != null && builtAt.toInstant().isAfter(Instant.now().minus(refreshEvery));
+        if (fresh && catalogue.size() > 0) return;      // an empty catalogue was never built or failed to open
+        try {
+            rebuild();
+        } catch (RuntimeException e) {
+            log.warn("Coin id index rebuild failed, keeping {} symbols: {}", index.size(), e.toString());
+        }
+    }
+
+    public void rebuild() {
+        var coins = prices.getCoinsList();
+        if (coins == null || coins.isEmpty()) return;
+        try {
+            catalogue.update(coins);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        var built = build(catalogue, prices.getMarketCapRanking(RANKED), overrides);
+
+        var now = Timestamp.from(Instant.now());
+        var rows = new ArrayList<Object[]>(built.size());
+        built.forEach((sym, e) -> rows.add(new Object[]{sym, e.coinId(), e.source(), now}));
+        tx.executeWithoutResult(s -> {
+            jdbc.update("delete from coin_id_index");
+            jdbc.batchUpdate("insert into coin_id_index (symbol, coin_id, source, updated_at) values (?, ?, ?, ?)", rows);
+        });
+        index = built;
+        log.info("Coin id index rebuilt: {} shared symbols and overrides from {} coins", built.size(), catalogue.size());
+    }
+
+    /**
+     * Overrides, then for each symbol several coins share: the best-ranked one, else the only non-derivative
+     * one, else nothing (no guessing). {@code bySymbol} must be grouped by symbol, as {@link CoinCatalogue}
+     * iterates; symbols with a single coin are left to the catalogue.
+     */
+    static Map<String, Entry> build(Iterable<PriceService.CoinInfo> bySymbol, List<String> ranking, Map<String, String> overrides) {
+        var rank = new HashMap<String, Integer>(ranking.size() * 2);
+        for (int i = 0; i < ranking.size(); i++) rank.putIfAbsent(ranking.get(i), i);
+
+        var out = new HashMap<String, Entry>();
+        var group = new ArrayList<PriceService.CoinInfo>();
+        String sym = null;
+        int undecided = 0;
+        for (var c : bySymbol) {
+            if (c.symbol() == null || c.symbol().isBlank() || c.id() == null) continue;
+            String s = c.symbol().trim().toUpperCase(Locale.ROOT);
+            if (!s.equals(sym)) {
+                if (!decide(sym, group, rank, out) && !overrides.containsKey(sym)) undecided++;
+                sym = s;
+                group.clear();
+            }
+            group.add(c);
+        }
+        if (!decide(sym, group, rank, out) && !overrides.containsKey(sym)) undecided++;
+        if (undecided > 0) log.info("Coin id index: {} shared symbols have no ranked or sole primary coin and stay unresolved", undecided);
+        out.putAll(seedIndex(overrides));
+        return Map.copyOf(out);
+    }
+
+    /** False only for a shared symbol neither rank nor derivative markers decide. */
+    private static boolean decide(String sym, List<PriceService.CoinInfo> group, Map<String, Integer> rank, Map<String, Entry> out) {
+        if (group.size() < 2) return true;
+        PriceService.CoinInfo ranked = null;
+        for (var c : group) {
+            Integer r = rank.get(c.id());
+            if (r != null && (ranked == null || r < rank.get(ranked.id()))) ranked = c;
+        }
+        if (ranked != null) {
+            out.put(sym, new Entry(ranked.id(), "ranked"));
+            return true;
+        }
+        var primary = group.stream().filter(c -> !isDerivative(c.id())).toList();
+        if (primary.size() == 1) {
+            out.put(sym, new Entry(primary.getFirst().id(), "primary"));
+            return true;
+        }
+        return false;
+    }
+
+    static boolean isDerivative(String id) {
+        for (String word : id.split("-")) if (DERIVATIVE_MARKERS.contains(word)) return true;
+        return false;
+    }
+
+    private static Map<String, Entry> seedIndex(Map<String, String> overrides) {
+        var out = new HashMap<String, Entry>();
+        overrides.forEach((sym, id) -> out.put(sym, new Entry(id, "override")));
+        return Map.copyOf(out);
+    }
+
+    static Map<String, String> parseOverrides(String spec) {
+        var out = new HashMap<String, String>();
+        if (spec == null || spec.isBlank()) return out;
+        for (String pair : spec.split(",")) {
+            int eq = pair.indexOf('=');
+            if (eq <= 0 || eq == pair.length() - 1) continue;
+            out.put(pair.substring(0, eq).trim().toUpperCase(Locale.ROOT), pair.substring(eq + 1).trim());
         }
+        return out;
     }
 }
@@ -2,6 +2,11 @@ package com.sandkev.cryptio.price;
 
 import com.github.benmanes.caffeine.cache.*;
 import com.sandkev.cryptio.config.CoinGeckoProperties;
+import com.sandkev.cryptio.events.PricesRefreshedEvent;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.*;
@@ -10,24 +15,60 @@ import reactor.util.retry.Retry;
 
 import java.math.BigDecimal;
 import java.time.Duration;
+import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
+@Slf4j
 @Service
 public class CoinGeckoPriceService implements PriceService {
 
     private final WebClient http;
     private final Retry retry;
     private final Cache<String, Object> cache;
+    /**
+     * simple/price results per (coin id, vs); empty = CoinGecko returned no price for it.
+     * Entries older than cache-ttl are reloaded in the background on the next read while the
+     * current value is served; a failed reload keeps the old value until stale-ttl.
+     */
+    private final AsyncLoadingCache<PriceKey, Optional<BigDecimal>> priceCache;
     private final Duration ttl;
+    private final Duration loadTimeout;
+    private final ApplicationEventPublisher events;
+    private final SimplePriceBatcher batcher;
 
-    public CoinGeckoPriceService(WebClient coingeckoWebClient, Retry geckoRetry, CoinGeckoProperties props) {
+    public CoinGeckoPriceService(WebClient coingeckoWebClient, Retry geckoRetry, CoinGeckoProperties props,
+                                 ApplicationEventPublisher events,
+                                 @Value("${coingecko.stale-ttl:PT24H}") Duration staleTtl,
+                                 @Value("${coingecko.load-timeout:30s}") Duration loadTimeout,
+                                 @Value("${coingecko.batch.window:25ms}") Duration batchWindow,
+                                 @Value("${coingecko.batch.max-ids:250}") int batchMaxIds,
+                                 @Value("${coingecko.batch.max-url-length:2000}") int batchMaxUrlLength) {
         this.http = coingeckoWebClient;
         this.retry = geckoRetry;
+        this.events = events;
         this.ttl = Duration.parse(props.cacheTtl());
+        this.loadTimeout = loadTimeout;
+        this.batcher = new SimplePriceBatcher(this::fetchSimplePrice, batchWindow, batchMaxIds,
+                batchMaxUrlLength - props.baseUrl().length());
         this.cache = Caffeine.newBuilder()
                 .expireAfterWrite(ttl)
                 .maximumSize(10_000)
                 .build();
+        this.priceCache = Caffeine.newBuilder()
+                .refreshAfterWrite(ttl)
+                .expireAfterWrite(staleTtl.compareTo(ttl) > 0 ? staleTtl : ttl.multipliedBy(2))
+                .maximumSize(50_000)
+                .buildAsync(new PriceLoader());
+    }
+
+    private record PriceKey(String coinId, String vs) {}
+
+    @PreDestroy
+    void shutdown() {
+        batcher.close();
     }
 
     @Override
@@ -44,11 +85,59 @@ public class CoinGeckoPriceService implements PriceService {
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public Map<String, Map<String, BigDecimal>> getSimplePrice(Set<String> coinIds, Set<String> vsCurrencies) {
         if (coinIds.isEmpty() || vsCurrencies.isEmpty()) return Map.of();
-        var key = "simple:" + String.join(",", sorted(coinIds)) + "|" + String.join(",", sortedLower(vsCurrencies));
-        return (Map<String, Map<String, BigDecimal>>) cache.get(key, k -> fetchSimplePrice(coinIds, vsCurrencies));
+        var vs = sortedLower(vsCurrencies);
+
+        var keys = new ArrayList<PriceKey>(coinIds.size() * vs.size());
+        for (String id : coinIds) for (String v : vs) keys.add(new PriceKey(id, v));
+        // Hits (fresh or stale) complete immediately; only cold misses wait on the batched load.
+        var cached = priceCache.getAll(keys).orTimeout(loadTimeout.toMillis(), TimeUnit.MILLISECONDS).join();
+
+        var out = new LinkedHashMap<String, Map<String, BigDecimal>>();
+        for (String id : coinIds) {
+            var inner = new LinkedHashMap<String, BigDecimal>();
+            for (String v : vs) {
+                var px = cached.get(new PriceKey(id, v));
+                if (px != null && px.isPresent()) inner.put(v, px.get());
+            }
+            if (!inner.isEmpty()) out.put(id, inner);
+        }
+        return out;
+    }
+
+    /**
+     * Loads misses through the batcher, so concurrent cold reads and the per-key background
+     * refreshes Caffeine issues one by one all coalesce into a few chunked upstream calls.
+     */
+    private final class PriceLoader implements AsyncCacheLoader<PriceKey, Optional<BigDecimal>> {
+
+        @Override
+        public CompletableFuture<Optional<BigDecimal>> asyncLoad(PriceKey key, Executor executor) {
+            return asyncLoadAll(Set.of(key), executor).thenApply(m -> m.getOrDefault(key, Optional.empty()));
+        }
+
+        @Override
+        public CompletableFuture<Map<PriceKey, Optional<BigDecimal>>> asyncLoadAll(
+                Set<? extends PriceKey> keys, Executor executor) {
+            var ids = new TreeSet<String>();
+            var vs = new TreeSet<String>();
+            for (var k : keys) {
+                ids.add(k.coinId());
+                vs.add(k.vs());
+            }
+            return batcher.submit(ids, vs).thenApply(fresh -> {
+                Map<PriceKey, Optional<BigDecimal>> out = new HashMap<>();
+                for (var k : keys) {
+                    var px = fresh.getOrDefault(k.coinId(), Map.of()).get(k.vs());
+                    out.put(k, Optional.ofNullable(px));
+                }
+                events.publishEvent(new PricesRefreshedEvent(Set.copyOf(ids), Set.copyOf(vs), Instant.now()));
+                return out;
+            }).whenComplete((m, err) -> {
+                if (err != null) log.warn("CoinGecko simple/price load failed for {} ids: {}", ids.size(), err.toString());
+            });
+        }
     }
 
     @Override
@@ -67,15 +156,26 @@ public class CoinGeckoPriceService implements PriceService {
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public List<CoinInfo> getCoinsList() {
-        var key = "coins_list";
-        return (List<CoinInfo>) cache.get(key, k -> fetchCoinsList());
+        // not cached: CoinCatalogue keeps the durable, compact copy
+        return fetchCoinsList();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<String> getMarketCapRanking(int limit) {
+        var key = "mcap:" + limit;
+        return (List<String>) cache.get(key, k -> fetchMarketCapRanking(limit));
+    }
+
+    @Override
+    public List<PricePoint> getMarketChart(String coinId, String vsCurrency, Instant from, Instant to) {
+        return fetchMarketChart(coinId, vsCurrency.toLowerCase(Locale.ROOT), from, to);
     }
 
     // ---- HTTP calls ----
 
-    private Map<String, Map<String, BigDecimal>> fetchSimplePrice(Set<String> ids, Set<String> vs) {
+    private CompletableFuture<Map<String, Map<String, BigDecimal>>> fetchSimplePrice(List<String> ids, List<String> vs) {
         String idsParam = String.join(",", sorted(ids));
         String vsParam  = String.join(",", sortedLower(vs));
 
@@ -90,7 +190,7 @@ public class CoinGeckoPriceService implements PriceService {
                 .bodyToMono(Map.class)
                 .retryWhen(retry)
                 .map(this::toNestedBigDecimalMap)
-                .block();
+                .toFuture();
     }
 
     private Map<String, Map<String, BigDecimal>> fetchTokenPrice(String chainId, Set<String> contracts, Set<String> vs) {
@@ -111,6 +211,61 @@ public class CoinGeckoPriceService implements PriceService {
                 .block();
     }
 
+    @SuppressWarnings("unchecked")
+    private List<PricePoint> fetchMarketChart(String coinId, String vs, Instant from, Instant to) {
+        Map<String, Object> body = http.get()
+                .uri(uri -> uri.path("/coins/{id}/market_chart/range")
+                        .queryParam("vs_currency", vs)
+                        .queryParam("from", from.getEpochSecond())
+                        .queryParam("to", to.getEpochSecond())
+                        .build(coinId))
+                .accept(MediaType.APPLICATION_JSON)
+                .retrieve()
+                .onStatus(s -> s.value() == 429, r -> Mono.error(new RuntimeException("Rate limited by CoinGecko (429)")))
+                .bodyToMono(Map.class)
+                .retryWhen(retry)
+                .block();
+        if (body == null || !(body.get("prices") instanceof List<?> raw)) return List.of();
+
+        var out = new ArrayList<PricePoint>(raw.size());
+        for (Object o : raw) {
+            var pair = (List<Object>) o;                   // [epochMillis, price]
+            if (pair.size() < 2 || pair.get(1) == null) continue;
+            out.add(new PricePoint(Instant.ofEpochMilli(((Number) pair.get(0)).longValue()),
+                    new BigDecimal(String.valueOf(pair.get(1)))));
+        }
+        out.sort(Comparator.comparing(PricePoint::ts));
+        return out;
+    }
+
+    private static final int MARKETS_PAGE_SIZE = 250;
+
+    private List<String> fetchMarketCapRanking(int limit) {
+        var ids = new ArrayList<String>(limit);
+        for (int page = 1; ids.size() < limit; page++) {
+            int p = page;
+            List<String> batch = http.get()
+                    .uri(uri -> uri.path("/coins/markets")
+                            .queryParam("vs_currency", "usd")
+                            .queryParam("order", "market_cap_desc")
+                            .queryParam("per_page", MARKETS_PAGE_SIZE)
+                            .queryParam("page", p)
+                            .build())
+                    .accept(MediaType.APPLICATION_JSON)
+                    .retrieve()
+                    .onStatus(s -> s.value() == 429, r -> Mono.error(new RuntimeException("Rate limited by CoinGecko (429)")))
+                    .bodyToFlux(Map.class)
+                    .map(m -> String.valueOf(m.get("id")))
+                    .collectList()
+                    .retryWhen(retry)
+                    .block();
+            if (batch == null || batch.isEmpty()) break;
+            ids.addAll(batch);
+            if (batch.size() < MARKETS_PAGE_SIZE) break;
+        }
+        return ids.size() > limit ? List.copyOf(ids.subList(0, limit)) : List.copyOf(ids);
+    }
+
     private List<String> fetchSupportedVs() {
         return http.get()
                 .uri("/simple/supported_vs_currencies")
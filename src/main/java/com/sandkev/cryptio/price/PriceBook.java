@@ -0,0 +1,62 @@
+package com.sandkev.cryptio.price;
+
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latest streamed price per exchange symbol (BTCUSDT -> last close). Written by {@link PriceStreamService},
+ * read without locks or I/O by the valuation path; a tick older than the stored one is ignored.
+ * Each price keeps when it arrived, so readers can drop symbols that stopped ticking, and the book is
+ * cleared on every (re)connect so nothing from a dead connection survives it.
+ */
+@Component
+public class PriceBook {
+
+    /** One streamed update: exchange symbol, last price, exchange event time. */
+    public record PriceTick(String symbol, BigDecimal price, long eventTimeMillis) {}
+
+    private record Quote(BigDecimal price, long eventTimeMillis, long receivedAtMillis) {}
+
+    private final Map<String, Quote> latest = new ConcurrentHashMap<>();
+    private final AtomicLong updatedAt = new AtomicLong();       // wall clock of the last applied tick
+
+    public void apply(PriceTick t) {
+        if (t.price() == null || t.price().signum() <= 0) return;
+        long now = System.currentTimeMillis();
+        latest.merge(t.symbol(), new Quote(t.price(), t.eventTimeMillis(), now),
+                (old, neu) -> neu.eventTimeMillis() >= old.eventTimeMillis() ? neu : old);
+        updatedAt.set(now);
+    }
+
+    public BigDecimal price(String symbol) {
+        var q = latest.get(symbol);
+        return q == null ? null : q.price();
+    }
+
+    /** The symbol's price if its last tick arrived after {@code notBefore}; null otherwise. */
+    public BigDecimal price(String symbol, Instant notBefore) {
+        var q = latest.get(symbol);
+        return q == null || q.receivedAtMillis() <= notBefore.toEpochMilli() ? null : q.price();
+    }
+
+    /** Forget every price, e.g. when the stream reconnects. */
+    public void clear() {
+        latest.clear();
+        updatedAt.set(0);
+    }
+
+    public int size() {
+        return latest.size();
+    }
+
+    /** When the last tick arrived; null if the stream has never delivered one. */
+    public Instant updatedAt() {
+        long at = updatedAt.get();
+        return at == 0 ? null : Instant.ofEpochMilli(at);
+    }
+}
@@ -0,0 +1,14 @@
+package com.sandkev.cryptio.price;
+
+import reactor.core.publisher.Flux;
+
+/**
+ * A streaming price source. {@link #connect()} opens one connection and emits its ticks until the
+ * connection ends (complete) or fails (error); {@link PriceStreamService} reconnects either way.
+ */
+public interface PriceFeed {
+
+    String name();
+
+    Flux<PriceBook.PriceTick> connect();
+}
@@ -0,0 +1,80 @@
+package com.sandkev.cryptio.price;
+
+import com.sandkev.cryptio.price.PriceService.PricePoint;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+/** price_point rows plus the per-(coin, vs) backfill/append state in price_history_state. */
+@Repository
+public class PriceHistoryDao {
+
+    public record State(String coinId, String vs, Instant backfilledAt, Instant lastTs) {}
+
+    private static final int BATCH_SIZE = 500;
+
+    private final JdbcTemplate jdbc;
+
+    public PriceHistoryDao(JdbcTemplate jdbc) { this.jdbc = jdbc; }
+
+    /** Idempotent: a point already stored for (coin, vs, ts) is overwritten with the newer price. */
+    public void append(String coinId, String vs, List<PricePoint> points) {
+        if (points.isEmpty()) return;
+        jdbc.batchUpdate("""
+            merge into price_point p
+            using (select cast(? as varchar(128))   as coin_id,
+                          cast(? as varchar(16))    as vs,
+                          cast(? as timestamp)      as ts,
+                          cast(? as numeric(38,18)) as price) s
+               on p.coin_id = s.coin_id and p.vs = s.vs and p.ts = s.ts
+             when matched then update set price = s.price
+             when not matched then insert (coin_id, vs, ts, price) values (s.coin_id, s.vs, s.ts, s.price)
+            """, points, BATCH_SIZE, (ps, p) -> {
+                ps.setString(1, coinId);
+                ps.setString(2, vs);
+                ps.setTimestamp(3, Timestamp.from(p.ts()));
+                ps.setBigDecimal(4, p.price());
+            });
+    }
+
+    /** Whole history for one pair, oldest first. */
+    public List<PricePoint> load(String coinId, String vs) {
+        return jdbc.query("select ts, price from price_point where coin_id=? and vs=? order by ts",
+                (rs, i) -> new PricePoint(rs.getTimestamp(1).toInstant(), rs.getBigDecimal(2)), coinId, vs);
+    }
+
+    public List<State> tracked() {
+        return jdbc.query("select coin_id, vs, backfilled_at, last_ts from price_history_state order by coin_id, vs",
+                (rs, i) -> new State(rs.getString(1), rs.getString(2),
+                        toInstant(rs.getTimestamp(3)), toInstant(rs.getTimestamp(4))));
+    }
+
+    public Optional<State> state(String coinId, String vs) {
+        return jdbc.query("select coin_id, vs, backfilled_at, last_ts from price_history_state where coin_id=? and vs=?",
+                (rs, i) -> new State(rs.getString(1), rs.getString(2),
+                        toInstant(rs.getTimestamp(3)), toInstant(rs.getTimestamp(4))), coinId, vs)
+                .stream().findFirst();
+    }
+
+    /** Start tracking a pair; a no-op if it is already tracked. */
+    public void track(String coinId, String vs) {
+        jdbc.update("""
+            insert into price_history_state (coin_id, vs)
+            select ?, ? where not exists (select 1 from price_history_state where coin_id=? and vs=?)
+            """, coinId, vs, coinId, vs);
+    }
+
+    public void saveState(String coinId, String vs, Instant backfilledAt, Instant lastTs) {
+        jdbc.update("update price_history_state set backfilled_at=?, last_ts=? where coin_id=? and vs=?",
+                backfilledAt == null ? null : Timestamp.from(backfilledAt),
+                lastTs == null ? null : Timestamp.from(lastTs), coinId, vs);
+    }
+
+    private static Instant toInstant(Timestamp ts) {
+        return ts == null ? null : ts.toInstant();
+    }
+}
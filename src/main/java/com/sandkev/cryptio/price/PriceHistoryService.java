@@ -0,0 +1,181 @@
+package com.sandkev.cryptio.price;
+
+import com.sandkev.cryptio.events.PricesRefreshedEvent;
+import com.sandkev.cryptio.price.PriceService.PricePoint;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Local price history. Every (coin, vs) that gets priced is tracked; the first sync backfills
+ * {@code cryptio.prices.history.daily} of daily points and {@code cryptio.prices.history.hourly} of
+ * hourly points, later syncs append from the last stored point. As-of reads are served from an
+ * in-memory {@link PriceSeries} per pair, loaded from price_point on first use.
+ */
+@Slf4j
+@Service
+public class PriceHistoryService {
+
+    private record Key(String coinId, String vs) {}
+
+    private final PriceHistoryDao dao;
+    private final PriceService prices;
+    private final Duration dailyWindow;
+    private final Duration hourlyWindow;
+    private final Duration maxGap;
+    private final Duration pause;
+
+    private final Map<Key, PriceSeries> index = new ConcurrentHashMap<>();
+    private final Set<Key> tracked = ConcurrentHashMap.newKeySet();
+    private final Set<Key> pending = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean syncing = new AtomicBoolean();
+    // syncs pause between upstream calls; kept off the shared scheduler thread so other jobs keep their pace
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "price-history");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public PriceHistoryService(PriceHistoryDao dao, PriceService prices,
+                               @Value("${cryptio.prices.history.daily:365d}") Duration dailyWindow,
+                               @Value("${cryptio.prices.history.hourly:90d}") Duration hourlyWindow,
+                               @Value("${cryptio.prices.history.max-gap:3d}") Duration maxGap,
+                               @Value("${cryptio.prices.history.pause:2s}") Duration pause) {
+        this.dao = dao;
+        this.prices = prices;
+        this.dailyWindow = dailyWindow;
+        this.hourlyWindow = hourlyWindow;
+        this.maxGap = maxGap;
+        this.pause = pause;
+    }
+
+    /** Price at or before {@code at}; empty if there is no point within max-gap of it. */
+    public Optional<BigDecimal> priceAt(String coinId, String vs, Instant at) {
+        var key = new Key(coinId, vs.toLowerCase(Locale.ROOT));
+        return series(key).asOf(at)
+                .filter(p -> !p.ts().isBefore(at.minus(maxGap)))
+                .map(PricePoint::price);
+    }
+
+    /** {@link #priceAt} for several coins; coins without a usable point are left out. */
+    public Map<String, BigDecimal> pricesAt(Collection<String> coinIds, String vs, Instant at) {
+        var out = new LinkedHashMap<String, BigDecimal>();
+        for (String id : coinIds) priceAt(id, vs, at).ifPresent(p -> out.put(id, p));
+        return out;
+    }
+
+    /** Only notes new pairs: the event may arrive on a reactor thread, so they are persisted by the next sync. */
+    @EventListener
+    public void onPrices(PricesRefreshedEvent e) {
+        for (String id : e.coinIds()) {
+            for (String vs : e.vs()) {
+                var key = new Key(id, vs);
+                if (!tracked.contains(key)) pending.add(key);
+            }
+        }
+    }
+
+    /** Hands the sync to the price-history thread; skipped if the previous one is still running. */
+    @Scheduled(initialDelayString = "${cryptio.prices.history.initial-delay:PT2M}",
+               fixedDelayString = "${cryptio.prices.history.interval:PT1H}")
+    public void syncAll() {
+        if (!syncing.compareAndSet(false, true)) return;
+        try {
+            worker.execute(() -> {
+                try {
+                    syncNow();
+                } finally {
+                    syncing.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            syncing.set(false);
+        }
+    }
+
+    void syncNow() {
+        trackPending();
+        for (var state : dao.tracked()) {
+            tracked.add(new Key(state.coinId(), state.vs()));
+            try {
+                sync(state);
+            } catch (RuntimeException ex) {
+                log.warn("Price history sync for {}/{} failed: {}", state.coinId(), state.vs(), ex.toString());
+            }
+            if (!pause()) return;
+        }
+    }
+
+    void sync(PriceHistoryDao.State state) {
+        Instant now = Instant.now();
+        var points = new ArrayList<PricePoint>();
+        Instant backfilledAt = state.backfilledAt();
+
+        if (backfilledAt == null) {
+            // CoinGecko returns daily points for spans over 90 days and hourly below, so fetch the two parts separately
+            Instant hourlyFrom = now.minus(hourlyWindow);
+            if (dailyWindow.compareTo(hourlyWindow) > 0) {
+                points.addAll(prices.getMarketChart(state.coinId(), state.vs(), now.minus(dailyWindow), hourlyFrom));
+                if (!pause()) return;
+            }
+            points.addAll(prices.getMarketChart(state.coinId(), state.vs(), hourlyFrom, now));
+            backfilledAt = now;
+        } else {
+            Instant from = state.lastTs() != null ? state.lastTs() : now.minus(hourlyWindow);
+            points.addAll(prices.getMarketChart(state.coinId(), state.vs(), from, now));
+        }
+
+        var key = new Key(state.coinId(), state.vs());
+        dao.append(key.coinId(), key.vs(), points);
+        index.computeIfPresent(key, (k, s) -> s.plus(points));   // not loaded yet -> next read loads from the table
+
+        Instant lastTs = points.isEmpty() ? state.lastTs() : points.getLast().ts();
+        dao.saveState(key.coinId(), key.vs(), backfilledAt, lastTs);
+        log.debug("Price history {}/{}: +{} points", key.coinId(), key.vs(), points.size());
+    }
+
+    private void trackPending() {
+        for (var key : List.copyOf(pending)) {
+            try {
+                dao.track(key.coinId(), key.vs());
+                tracked.add(key);
+                pending.remove(key);
+            } catch (RuntimeException ex) {
+                log.warn("Could not track price history for {}/{}: {}", key.coinId(), key.vs(), ex.toString());
+            }
+        }
+    }
+
+    private PriceSeries series(Key key) {
+        return index.computeIfAbsent(key, k -> PriceSeries.of(dao.load(k.coinId(), k.vs())));
+    }
+
+    /** Spaces out upstream calls (free-tier rate limit); false if interrupted. */
+    private boolean pause() {
+        try {
+            Thread.sleep(pause);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        worker.shutdownNow();
+    }
+}
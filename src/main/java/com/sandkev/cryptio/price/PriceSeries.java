@@ -0,0 +1,64 @@
+package com.sandkev.cryptio.price;
+
+import com.sandkev.cryptio.price.PriceService.PricePoint;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Immutable price history for one (coin, vs): parallel arrays sorted by time, so an as-of lookup is a
+ * binary search. Appends return a new instance; readers never see a half-written series.
+ */
+final class PriceSeries {
+
+    static final PriceSeries EMPTY = new PriceSeries(new long[0], new BigDecimal[0]);
+
+    private final long[] ts;            // epoch millis, strictly increasing
+    private final BigDecimal[] px;
+
+    private PriceSeries(long[] ts, BigDecimal[] px) {
+        this.ts = ts;
+        this.px = px;
+    }
+
+    /** Points must be sorted by time (as PriceHistoryDao and CoinGecko return them). */
+    static PriceSeries of(List<PricePoint> points) {
+        return EMPTY.plus(points);
+    }
+
+    int size() {
+        return ts.length;
+    }
+
+    Optional<Instant> last() {
+        return ts.length == 0 ? Optional.empty() : Optional.of(Instant.ofEpochMilli(ts[ts.length - 1]));
+    }
+
+    /** Latest price at or before {@code at}; empty before the first point. */
+    Optional<PricePoint> asOf(Instant at) {
+        int i = Arrays.binarySearch(ts, at.toEpochMilli());
+        if (i < 0) i = -i - 2;                              // insertion point - 1
+        return i < 0 ? Optional.empty() : Optional.of(new PricePoint(Instant.ofEpochMilli(ts[i]), px[i]));
+    }
+
+    /** Appends points newer than the current last one; older or duplicate timestamps are ignored. */
+    PriceSeries plus(List<PricePoint> points) {
+        long last = ts.length == 0 ? Long.MIN_VALUE : ts[ts.length - 1];
+        long[] nts = Arrays.copyOf(ts, ts.length + points.size());
+        BigDecimal[] npx = Arrays.copyOf(px, px.length + points.size());
+        int n = ts.length;
+        for (PricePoint p : points) {
+            long t = p.ts().toEpochMilli();
+            if (t <= last) continue;
+            nts[n] = t;
+            npx[n] = p.price();
+            n++;
+            last = t;
+        }
+        if (n == ts.length) return this;
+        return new PriceSeries(Arrays.copyOf(nts, n), Arrays.copyOf(npx, n));
+    }
+}
@@ -1,6 +1,7 @@
 package com.sandkev.cryptio.price;
 
 import java.math.BigDecimal;
+import java.time.Instant;
 import java.util.*;
 
 public interface PriceService {
@@ -23,9 +24,24 @@ public interface PriceService {
     List<String> getSupportedVsCurrencies();
 
     /**
-     * Lightweight coin list (id-symbol mapping) for resolving IDs.
+     * Lightweight coin list (id-symbol mapping) for resolving IDs. Always a full download; read
+     * {@link CoinCatalogue} instead unless you are refreshing it.
      */
     List<CoinInfo> getCoinsList();
 
+    /**
+     * /coins/markets ordered by market cap: the ids of the top {@code limit} coins, largest first.
+     * Used to pick the real coin when several share a symbol.
+     */
+    List<String> getMarketCapRanking(int limit);
+
+    /**
+     * /coins/{id}/market_chart/range: historical prices in [from, to], oldest first. CoinGecko picks the
+     * granularity from the span: hourly up to 90 days, daily beyond. Not cached.
+     */
+    List<PricePoint> getMarketChart(String coinId, String vsCurrency, Instant from, Instant to);
+
     record CoinInfo(String id, String symbol, String name) {}
+
+    record PricePoint(Instant ts, BigDecimal price) {}
 }
@@ -0,0 +1,63 @@
+package com.sandkev.cryptio.price;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+
+/**
+ * Keeps {@link PriceBook} fed from a {@link PriceFeed}: connects once the app is up and reconnects with
+ * backoff (capped at {@code cryptio.prices.stream.max-backoff}) whenever the connection drops or fails.
+ * The book is cleared on each connect, so REST prices cover the gap until the new connection ticks.
+ * Off unless {@code cryptio.prices.stream.enabled} is set (the {@code live} profile does), so tests and
+ * offline runs never open a socket to Binance.
+ */
+@Slf4j
+@Service
+public class PriceStreamService {
+
+    private final PriceFeed feed;
+    private final PriceBook book;
+    private final boolean enabled;
+    private final Duration maxBackoff;
+
+    private volatile Disposable subscription;
+
+    public PriceStreamService(PriceFeed feed, PriceBook book,
+                              @Value("${cryptio.prices.stream.enabled:false}") boolean enabled,
+                              @Value("${cryptio.prices.stream.max-backoff:30s}") Duration maxBackoff) {
+        this.feed = feed;
+        this.book = book;
+        this.enabled = enabled;
+        this.maxBackoff = maxBackoff;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled || subscription != null) return;
+        subscription = feed.connect()
+                .doOnSubscribe(s -> {
+                    log.info("Price stream {} connecting", feed.name());
+                    book.clear();                               // nothing from the previous connection carries over
+                })
+                .doOnNext(book::apply)
+                .doOnError(e -> log.warn("Price stream {} failed: {}", feed.name(), e.toString()))
+                // server closed the connection (Binance does every 24h)
+                .repeatWhen(done -> done.delayElements(Duration.ofSeconds(1)))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1)).maxBackoff(maxBackoff)
+                        .transientErrors(true))                  // backoff restarts after a healthy connection
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        var s = subscription;
+        if (s != null) s.dispose();
+    }
+}
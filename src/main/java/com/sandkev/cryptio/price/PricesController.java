@@ -1,11 +1,13 @@
 package com.sandkev.cryptio.price;
 
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.math.BigDecimal;
+import java.time.Instant;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -15,8 +17,12 @@ import java.util.Set;
 class PricesController {
 
     private final PriceService prices;
+    private final PriceHistoryService history;
 
-    PricesController(PriceService prices) { this.prices = prices; }
+    PricesController(PriceService prices, PriceHistoryService history) {
+        this.prices = prices;
+        this.history = history;
+    }
 
     // GET /prices/simple?ids=bitcoin,ethereum&vs=usd
     @GetMapping("/simple")
@@ -35,6 +41,15 @@ class PricesController {
         return prices.getTokenPrice(chain, contracts, vs);
     }
 
+    // GET /prices/history?ids=bitcoin,ethereum&vs=gbp&at=2024-04-05T00:00:00Z  (local store only)
+    @GetMapping("/history")
+    Map<String, BigDecimal> history(
+            @RequestParam Set<String> ids,
+            @RequestParam(defaultValue = "usd") String vs,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant at) {
+        return history.pricesAt(ids, vs, at);
+    }
+
     @GetMapping("/supported-vs")
     List<String> supportedVs() { return prices.getSupportedVsCurrencies(); }
 }
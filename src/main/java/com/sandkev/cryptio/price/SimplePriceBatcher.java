@@ -0,0 +1,156 @@
+package com.sandkev.cryptio.price;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesces concurrent /simple/price lookups. Requests arriving within {@code window} of the first
+ * one are merged (union of ids and vs), split into the fewest chunks that respect both the id-count
+ * and URL-length limits, fetched concurrently, and each caller gets its own slice of the result as soon
+ * as the chunks covering its ids are in; a failed chunk fails only the callers that needed it.
+ */
+@Slf4j
+final class SimplePriceBatcher implements AutoCloseable {
+
+    /** One upstream call for a chunk of ids; vs is the union across the batch. */
+    interface Fetcher {
+        CompletableFuture<Map<String, Map<String, BigDecimal>>> fetch(List<String> ids, List<String> vs);
+    }
+
+    /** Path, param names and separators around the two lists; the base URL is counted by the caller. */
+    private static final int FIXED_OVERHEAD = "/simple/price?ids=&vs_currencies=".length();
+
+    private record Request(Set<String> ids, Set<String> vs, CompletableFuture<Map<String, Map<String, BigDecimal>>> result) {}
+
+    private final Fetcher fetcher;
+    private final Duration window;
+    private final int maxIds;
+    private final int maxUrlLength;
+    private final ScheduledExecutorService timer;
+    private final AtomicLong upstreamCalls = new AtomicLong();
+
+    private List<Request> pending = new ArrayList<>();
+
+    SimplePriceBatcher(Fetcher fetcher, Duration window, int maxIds, int maxUrlLength) {
+        this.fetcher = fetcher;
+        this.window = window;
+        this.maxIds = Math.max(1, maxIds);
+        this.maxUrlLength = maxUrlLength;
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            var t = new Thread(r, "gecko-batch");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    CompletableFuture<Map<String, Map<String, BigDecimal>>> submit(Set<String> ids, Set<String> vs) {
+        var req = new Request(Set.copyOf(ids), Set.copyOf(vs), new CompletableFuture<>());
+        boolean first;
+        synchronized (this) {
+            first = pending.isEmpty();
+            pending.add(req);
+        }
+        if (first) timer.schedule(this::flush, window.toNanos(), TimeUnit.NANOSECONDS);
+        return req.result();
+    }
+
+    long upstreamCalls() {
+        return upstreamCalls.get();
+    }
+
+    void flush() {
+        List<Request> batch;
+        synchronized (this) {
+            if (pending.isEmpty()) return;
+            batch = pending;
+            pending = new ArrayList<>();
+        }
+        var ids = new TreeSet<String>();
+        var vs = new TreeSet<String>();
+        for (var r : batch) {
+            ids.addAll(r.ids());
+            vs.addAll(r.vs());
+        }
+        var vsList = List.copyOf(vs);
+        var chunks = chunk(ids, String.join(",", vsList).length());
+
+        var calls = new ArrayList<CompletableFuture<Map<String, Map<String, BigDecimal>>>>(chunks.size());
+        for (var c : chunks) {
+            upstreamCalls.incrementAndGet();
+            CompletableFuture<Map<String, Map<String, BigDecimal>>> call;
+            try {
+                call = fetcher.fetch(c, vsList);
+            } catch (RuntimeException e) {
+                call = CompletableFuture.failedFuture(e);
+            }
+            calls.add(call);
+        }
+        log.debug("simple/price batch: {} callers, {} ids, {} calls", batch.size(), ids.size(), calls.size());
+
+        // each caller waits only for the chunks holding its own ids, so one failed chunk fails only its callers
+        var chunkOf = new HashMap<String, Integer>();
+        for (int i = 0; i < chunks.size(); i++) for (String id : chunks.get(i)) chunkOf.put(id, i);
+        for (var r : batch) {
+            var own = new ArrayList<CompletableFuture<Map<String, Map<String, BigDecimal>>>>();
+            r.ids().stream().map(chunkOf::get).distinct().forEach(i -> own.add(calls.get(i)));
+            CompletableFuture.allOf(own.toArray(CompletableFuture[]::new)).whenComplete((v, err) -> {
+                if (err != null) {
+                    r.result().completeExceptionally(err);
+                    return;
+                }
+                var merged = new HashMap<String, Map<String, BigDecimal>>();
+                for (var c : own) {
+                    var part = c.join();
+                    if (part != null) merged.putAll(part);
+                }
+                r.result().complete(slice(merged, r));
+            });
+        }
+    }
+
+    /** Greedy split of sorted ids so each chunk stays within maxIds and the URL budget. */
+    List<List<String>> chunk(SortedSet<String> ids, int vsParamLength) {
+        int budget = maxUrlLength - FIXED_OVERHEAD - vsParamLength;
+        var out = new ArrayList<List<String>>();
+        var cur = new ArrayList<String>();
+        int len = 0;
+        for (String id : ids) {
+            int add = id.length() + (cur.isEmpty() ? 0 : 1);
+            if (!cur.isEmpty() && (cur.size() >= maxIds || len + add > budget)) {
+                out.add(cur);
+                cur = new ArrayList<>();
+                len = 0;
+                add = id.length();
+            }
+            cur.add(id);
+            len += add;
+        }
+        if (!cur.isEmpty()) out.add(cur);
+        return out;
+    }
+
+    private static Map<String, Map<String, BigDecimal>> slice(Map<String, Map<String, BigDecimal>> all, Request r) {
+        var out = new HashMap<String, Map<String, BigDecimal>>();
+        for (String id : r.ids()) {
+            var byVs = all.get(id);
+            if (byVs == null) continue;
+            var inner = new HashMap<String, BigDecimal>();
+            for (String v : r.vs()) {
+                var px = byVs.get(v);
+                if (px != null) inner.put(v, px);
+            }
+            if (!inner.isEmpty()) out.put(id, inner);
+        }
+        return out;
+    }
+
+    @Override
+    public void close() {
+        timer.shutdownNow();
+    }
+}
@@ -2,9 +2,12 @@
 package com.sandkev.cryptio.reconciliation;
 
 import com.sandkev.cryptio.portfolio.ReconcileService;
+import com.sandkev.cryptio.tx.KnownTxIndex;
+import com.sandkev.cryptio.tx.TxPositionDao;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import java.math.BigDecimal;
 
@@ -12,9 +15,13 @@ import java.math.BigDecimal;
 public class ReconcileController {
 
     private final ReconcileService recon;
+    private final TxPositionDao positions;
+    private final KnownTxIndex known;
 
-    public ReconcileController(ReconcileService recon) {
+    public ReconcileController(ReconcileService recon, TxPositionDao positions, KnownTxIndex known) {
         this.recon = recon;
+        this.positions = positions;
+        this.known = known;
     }
 
     @GetMapping("/reconcile")
@@ -38,4 +45,17 @@ public class ReconcileController {
 
         return "reconcile";
     }
+
+    /** Recompute tx_position from the full tx table (after bulk loads / manual SQL fixes). */
+    @PostMapping("/reconcile/rebuild-positions")
+    public String rebuildPositions(@RequestParam(defaultValue = "primary") String account,
+                                   @RequestParam(defaultValue = "binance") String platform,
+                                   RedirectAttributes flash) {
+        int rows = positions.rebuild();
+        known.invalidateAll();          // manual SQL fixes also bypass the known-tx hashes
+        flash.addFlashAttribute("notice", "Rebuilt " + rows + " tx positions");
+        flash.addAttribute("account", account);     // appended to the redirect as encoded query params
+        flash.addAttribute("platform", platform);
+        return "redirect:/reconcile";
+    }
 }
@@ -0,0 +1,25 @@
+package com.sandkev.cryptio.shared;
+
+import java.util.Locale;
+
+/**
+ * Canonical forms for exchange codes and account refs.
+ * Values are normalised once on write (and on every query parameter), so SQL can use plain
+ * equality and hit the (exchange, account_ref, ...) indexes instead of lower(...) scans.
+ */
+public final class Canonical {
+
+    private Canonical() {}
+
+    /** "Binance " -> "binance" (matches exchange.code); null/blank stays null. */
+    public static String exchange(String exchange) {
+        if (exchange == null || exchange.isBlank()) return null;
+        return exchange.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /** Account refs are free-form labels: trimmed, case preserved; null/blank stays null. */
+    public static String account(String accountRef) {
+        if (accountRef == null || accountRef.isBlank()) return null;
+        return accountRef.trim();
+    }
+}
@@ -0,0 +1,177 @@
+package com.sandkev.cryptio.tx;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.OptionalLong;
+
+/**
+ * In-memory index of tx rows already stored: (exchange, external_id) -> {@link TxRowHash}.
+ * Lets TxWriterImpl skip the database for rows that are known AND unchanged (re-runs, since-date overrides).
+ *
+ * Ids of the form "stream:...:number" (e.g. "trade:BTCUSDT:123", "withdraw:987") share one primitive map
+ * per (exchange, stream), the stream being the part before the first ':'. Whatever sits between stream and
+ * number ("BTCUSDT", a deposit's tx hash) is dictionary-coded into the key's high bits, so ids that differ
+ * only in the middle never collide and a per-row middle costs a dictionary entry, not a map. Anything else
+ * falls back to a String-keyed map. Each exchange is warmed from tx once, on first use, without holding
+ * the lock during the query. The index is exact (no false positives), so a positive lookup is safe to act on.
+ */
+@Slf4j
+@Component
+public class KnownTxIndex {
+
+    private static final long MISSING = Long.MIN_VALUE;
+    private static final int ID_BITS = 42;                  // millis timestamps fit until 2109
+    private static final long MAX_ID = (1L << ID_BITS) - 1;
+    private static final int MAX_MIDDLES = 1 << (63 - ID_BITS);
+
+    private final JdbcTemplate jdbc;
+    private final Map<String, ExchangeIndex> byExchange = new HashMap<>();
+    private long generation;
+
+    public KnownTxIndex(JdbcTemplate jdbc) { this.jdbc = jdbc; }
+
+    /** True when (exchange, externalId) is stored with exactly this hash, i.e. an upsert would be a no-op. */
+    public boolean isUnchanged(String exchange, String externalId, long rowHash) {
+        if (exchange == null || externalId == null) return false;
+        var known = index(exchange).get(externalId);
+        return known.isPresent() && known.getAsLong() == rowHash;
+    }
+
+    /** Remember a written row; deferred to after commit when called inside a transaction. */
+    public void record(String exchange, String externalId, long rowHash) {
+        if (exchange == null || externalId == null) return;
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override public void afterCommit() { index(exchange).put(externalId, rowHash); }
+            });
+        } else {
+            index(exchange).put(externalId, rowHash);
+        }
+    }
+
+    /** Forget everything for an exchange (e.g. after rows were written outside TxWriterImpl). */
+    public synchronized void invalidate(String exchange) {
+        byExchange.remove(exchange);
+        generation++;
+    }
+
+    /** Forget every exchange; the next lookup re-warms from tx. */
+    public synchronized void invalidateAll() {
+        byExchange.clear();
+        generation++;
+    }
+
+    private ExchangeIndex index(String exchange) {
+        long gen;
+        synchronized (this) {
+            var idx = byExchange.get(exchange);
+            if (idx != null) return idx;
+            gen = generation;
+        }
+        var warmed = warm(exchange);
+        synchronized (this) {
+            var idx = byExchange.get(exchange);
+            if (idx != null) return idx;                    // another thread warmed it meanwhile
+            // invalidated while warming: the query may predate the change, so use it this once only
+            if (gen == generation) byExchange.put(exchange, warmed);
+            return warmed;
+        }
+    }
+
+    private ExchangeIndex warm(String exchange) {
+        long t0 = System.nanoTime();
+        var idx = new ExchangeIndex();
+        jdbc.query("""
+            select external_id, row_hash, quantity, price, fee, fee_asset, ts
+              from tx
+             where exchange=? and external_id is not null
+            """, rs -> {
+            long stored = rs.getLong(2);
+            // rows predating row_hash: hash the columns the same way TxWriterImpl would
+            idx.put(rs.getString(1), !rs.wasNull() ? stored : TxRowHash.of(
+                    rs.getBigDecimal(3), rs.getBigDecimal(4), rs.getBigDecimal(5), rs.getString(6),
+                    rs.getTimestamp(7) == null ? null : rs.getTimestamp(7).toInstant()));
+        }, exchange);
+        log.info("Warmed known-tx index for {}: {} ids in {} ms", exchange, idx.size(), (System.nanoTime() - t0) / 1_000_000);
+        return idx;
+    }
+
+    /** One stream's ids: middle segment -> dictionary code, (code, number) -> row hash. */
+    private static final class Stream {
+        private final Map<String, Integer> middles = new HashMap<>();
+        private final LongLongOpenMap ids = new LongLongOpenMap(16);
+    }
+
+    /** Per-exchange maps; each instance guards itself, so warming one never blocks lookups on another. */
+    private static final class ExchangeIndex {
+        private final Map<String, Stream> streams = new HashMap<>();
+        private final Map<String, Long> other = new HashMap<>();
+
+        synchronized OptionalLong get(String externalId) {
+            int first = externalId.indexOf(':'), last = externalId.lastIndexOf(':');
+            long id = first > 0 ? parseId(externalId, last + 1) : MISSING;
+            if (id != MISSING) {
+                var stream = streams.get(externalId.substring(0, first));
+                Integer middle = stream == null ? null : stream.middles.get(middle(externalId, first, last));
+                if (middle != null) {
+                    long key = key(middle, id);
+                    return stream.ids.containsKey(key) ? OptionalLong.of(stream.ids.get(key, 0L)) : OptionalLong.empty();
+                }
+            }
+            Long h = other.get(externalId);
+            return h == null ? OptionalLong.empty() : OptionalLong.of(h);
+        }
+
+        synchronized void put(String externalId, long rowHash) {
+            int first = externalId.indexOf(':'), last = externalId.lastIndexOf(':');
+            long id = first > 0 ? parseId(externalId, last + 1) : MISSING;
+            if (id != MISSING) {
+                var stream = streams.computeIfAbsent(externalId.substring(0, first), k -> new Stream());
+                String m = middle(externalId, first, last);
+                Integer code = stream.middles.get(m);
+                if (code == null && stream.middles.size() < MAX_MIDDLES) {
+                    code = stream.middles.size();
+                    stream.middles.put(m, code);
+                }
+                if (code != null) {
+                    stream.ids.put(key(code, id), rowHash);
+                    return;
+                }
+            }
+            other.put(externalId, rowHash);
+        }
+
+        synchronized int size() {
+            return other.size() + streams.values().stream().mapToInt(s -> s.ids.size()).sum();
+        }
+
+        private static String middle(String externalId, int first, int last) {
+            return first == last ? "" : externalId.substring(first + 1, last);
+        }
+
+        private static long key(int middle, long id) {
+            return ((long) middle << ID_BITS) | id;
+        }
+    }
+
+    /** Parses a non-negative decimal id without allocating; MISSING if not purely numeric or above MAX_ID. */
+    private static long parseId(String s, int from) {
+        int len = s.length() - from;
+        if (len <= 0 || len > 13) return MISSING;
+        long v = 0;
+        for (int i = from; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') return MISSING;
+            v = v * 10 + (c - '0');
+        }
+        // "007" and "7" must stay distinct keys; only canonical numbers go to the primitive map
+        if (len > 1 && s.charAt(from) == '0') return MISSING;
+        return v > MAX_ID ? MISSING : v;
+    }
+}
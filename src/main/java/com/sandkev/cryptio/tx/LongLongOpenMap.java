@@ -0,0 +1,87 @@
+package com.sandkev.cryptio.tx;
+
+import java.util.Arrays;
+
+/**
+ * Minimal open-addressing long -> long map (linear probing, no removal).
+ * ~16 bytes per entry instead of ~80 for HashMap&lt;Long,Long&gt;; used for numeric exchange ids.
+ * Not thread-safe; callers synchronise.
+ */
+final class LongLongOpenMap {
+
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private long[] keys;
+    private long[] values;
+    private int size;
+    private boolean hasEmptyKey;   // Long.MIN_VALUE is the sentinel; store it out of band
+    private long emptyKeyValue;
+
+    LongLongOpenMap(int expected) {
+        int cap = Integer.highestOneBit(Math.max(16, expected * 2 - 1)) << 1;
+        keys = new long[cap];
+        values = new long[cap];
+        Arrays.fill(keys, EMPTY);
+    }
+
+    int size() { return size + (hasEmptyKey ? 1 : 0); }
+
+    boolean containsKey(long key) {
+        if (key == EMPTY) return hasEmptyKey;
+        return keys[slot(key)] == key;
+    }
+
+    /** @return the value for key, or {@code missing} if absent */
+    long get(long key, long missing) {
+        if (key == EMPTY) return hasEmptyKey ? emptyKeyValue : missing;
+        int s = slot(key);
+        return keys[s] == key ? values[s] : missing;
+    }
+
+    void put(long key, long value) {
+        if (key == EMPTY) {
+            hasEmptyKey = true;
+            emptyKeyValue = value;
+            return;
+        }
+        int s = slot(key);
+        if (keys[s] != key) {
+            if ((size + 1) * 4 > keys.length * 3) {     // keep load factor <= 0.75
+                grow();
+                s = slot(key);
+            }
+            keys[s] = key;
+            size++;
+        }
+        values[s] = value;
+    }
+
+    private int slot(long key) {
+        int mask = keys.length - 1;
+        int s = mix(key) & mask;
+        while (keys[s] != EMPTY && keys[s] != key) s = (s + 1) & mask;
+        return s;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new long[oldKeys.length * 2];
+        Arrays.fill(keys, EMPTY);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int s = slot(oldKeys[i]);
+                keys[s] = oldKeys[i];
+                values[s] = oldValues[i];
+            }
+        }
+    }
+
+    private static int mix(long k) {
+        k ^= (k >>> 33);
+        k *= 0xff51afd7ed558ccdL;
+        k ^= (k >>> 33);
+        return (int) k;
+    }
+}
@@ -3,19 +3,28 @@ package com.sandkev.cryptio.tx;
 
 import com.sandkev.cryptio.tx.TxService;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.Instant;
+import java.util.Locale;
 
 @Controller
 public class TxController {
 
   private final TxService txService;
+  private final TxExporter exporter;
 
-  public TxController(TxService txService) {
+  public TxController(TxService txService, TxExporter exporter) {
     this.txService = txService;
+    this.exporter = exporter;
   }
 
   @GetMapping("/tx")
@@ -25,17 +34,70 @@ public class TxController {
                      @RequestParam(required = false) String type,
                      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
                      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+                     @RequestParam(defaultValue = "" + TxService.DEFAULT_PAGE_SIZE) int size,
                      Model model) {
 
-    var rows = txService.listFiltered(exchange, account, asset, type, from, to);
+    // first page only; further pages are fetched by the page via /tx/page
+    var page = txService.page(exchange, account, asset, type, from, to, null, size);
     model.addAttribute("exchange", exchange);
     model.addAttribute("account", account);
     model.addAttribute("asset", asset);
     model.addAttribute("type", type);
     model.addAttribute("from", from);
     model.addAttribute("to", to);
-    model.addAttribute("rows", rows); // rows must expose fields used by template: ts, exchange, accountRef, asset, quote, type, qty, price, fee, feeAsset, externalId
+    model.addAttribute("size", size);
+    model.addAttribute("rows", page.rows()); // TxRow: ts, exchange, accountRef, asset, quote, type, qty, price, fee, feeAsset, externalId
+    model.addAttribute("nextCursor", page.nextCursor());
 
     return "tx";
   }
+
+  /** Keyset page as JSON for incremental loading; pass back nextCursor to continue. */
+  @GetMapping("/tx/page")
+  @ResponseBody
+  public TxPage page(@RequestParam(required = false) String exchange,
+                     @RequestParam(defaultValue = "primary") String account,
+                     @RequestParam(required = false) String asset,
+                     @RequestParam(required = false) String type,
+                     @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+                     @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+                     @RequestParam(required = false) String cursor,
+                     @RequestParam(defaultValue = "" + TxService.DEFAULT_PAGE_SIZE) int size) {
+    try {
+      return txService.page(exchange, account, asset, type, from, to, cursor, size);
+    } catch (IllegalArgumentException e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Streams every matching row as CSV (default) or NDJSON (format=ndjson).
+   * Runs on the MVC async executor; the servlet thread is released immediately and the
+   * export thread is busy only while the client keeps reading. Bounded by spring.mvc.async.request-timeout
+   * (application.properties), not the container's short default.
+   */
+  @GetMapping("/tx/export")
+  public ResponseEntity<StreamingResponseBody> export(@RequestParam(required = false) String exchange,
+                                                      @RequestParam(defaultValue = "primary") String account,
+                                                      @RequestParam(required = false) String asset,
+                                                      @RequestParam(required = false) String type,
+                                                      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+                                                      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+                                                      @RequestParam(defaultValue = "csv") String format) {
+    TxExporter.Format fmt;
+    try {
+      fmt = TxExporter.Format.valueOf(format.toUpperCase(Locale.ROOT));
+    } catch (IllegalArgumentException e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "format must be csv or ndjson");
+    }
+
+    var filter = new TxExporter.Filter(exchange, account, asset, type, from, to);
+    StreamingResponseBody body = out -> exporter.export(filter, fmt, out);
+
+    boolean csv = fmt == TxExporter.Format.CSV;
+    return ResponseEntity.ok()
+            .contentType(csv ? new MediaType("text", "csv") : MediaType.APPLICATION_NDJSON)
+            .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"tx-export." + (csv ? "csv" : "ndjson") + "\"")
+            .body(body);
+  }
 }
@@ -0,0 +1,36 @@
+package com.sandkev.cryptio.tx;
+
+import java.time.Instant;
+
+/**
+ * Keyset position for paging tx in (ts desc, id desc) order.
+ * Encoded as "epochSecond.nanos_id" so it survives a round trip through a query string.
+ */
+public record TxCursor(Instant ts, long id) {
+
+    /** Position before the newest row: first page. */
+    static final TxCursor START = new TxCursor(TxService.MAX_TS, Long.MAX_VALUE);
+
+    public static TxCursor after(TxRow row) {
+        return new TxCursor(row.ts(), row.id());
+    }
+
+    public String encode() {
+        return ts.getEpochSecond() + "." + ts.getNano() + "_" + id;
+    }
+
+    /** null/blank -> {@link #START}; malformed -> IllegalArgumentException. */
+    public static TxCursor decode(String s) {
+        if (s == null || s.isBlank()) return START;
+        try {
+            int us = s.indexOf('_');
+            int dot = s.indexOf('.');
+            long sec = Long.parseLong(s.substring(0, dot));
+            int nanos = Integer.parseInt(s.substring(dot + 1, us));
+            long id = Long.parseLong(s.substring(us + 1));
+            return new TxCursor(Instant.ofEpochSecond(sec, nanos), id);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid tx cursor: " + s, e);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.sandkev.cryptio.tx;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sandkev.cryptio.shared.Canonical;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+
+/**
+ * Streams filtered tx rows straight from a forward-only cursor to an OutputStream.
+ * Memory stays constant: rows are written as they are read, never collected.
+ */
+@Repository
+public class TxExporter {
+
+    public enum Format { CSV, NDJSON }
+
+    /** Rows per round trip; Postgres only honours this inside a transaction (cursor mode). */
+    static final int FETCH_SIZE = 5_000;
+
+    private static final String SQL = """
+        select id, ts, exchange, account_ref, base, quote, type, quantity, price, fee, fee_asset, external_id
+          from tx
+         where (? is null or upper(base) = upper(?))
+           and (? is null or exchange = ?)
+           and (? is null or account_ref = ?)
+           and (? is null or upper(type) = upper(?))
+           and ts >= ?
+           and ts <  ?
+         order by ts, id
+        """;
+
+    private static final String[] COLUMNS = {
+            "id", "ts", "exchange", "accountRef", "asset", "quote", "type",
+            "qty", "price", "fee", "feeAsset", "externalId"
+    };
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate readOnlyTx;
+    private final ObjectMapper json;
+
+    public TxExporter(JdbcTemplate jdbc, PlatformTransactionManager txManager, ObjectMapper json) {
+        this.jdbc = jdbc;
+        this.readOnlyTx = new TransactionTemplate(txManager);
+        this.readOnlyTx.setReadOnly(true);
+        this.json = json;
+    }
+
+    /** Same filters as {@link TxRepository#findFiltered}; null/blank means "any". */
+    public record Filter(String exchange, String account, String asset, String type, Instant from, Instant to) {}
+
+    /** @return number of rows written */
+    public long export(Filter f, Format format, OutputStream out) {
+        String asset = n(f.asset());
+        String exchange = Canonical.exchange(f.exchange());
+        String account = Canonical.account(f.account());
+        String type = n(f.type());
+        Timestamp from = Timestamp.from(f.from() == null ? TxService.MIN_TS : f.from());
+        Timestamp to = Timestamp.from(f.to() == null ? TxService.MAX_TS : f.to());
+
+        RowSink sink = format == Format.NDJSON ? new NdjsonSink(out) : new CsvSink(out);
+        long[] count = {0};
+        readOnlyTx.executeWithoutResult(status -> {
+            jdbc.query(con -> {
+                var ps = con.prepareStatement(SQL, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                ps.setFetchSize(FETCH_SIZE);
+                int i = 1;
+                ps.setString(i++, asset);    ps.setString(i++, asset);
+                ps.setString(i++, exchange); ps.setString(i++, exchange);
+                ps.setString(i++, account);  ps.setString(i++, account);
+                ps.setString(i++, type);     ps.setString(i++, type);
+                ps.setTimestamp(i++, from);
+                ps.setTimestamp(i, to);
+                return ps;
+            }, rs -> {
+                sink.write(rs);
+                count[0]++;
+            });
+        });
+        sink.close();
+        return count[0];
+    }
+
+    // ---- sinks ----
+
+    private interface RowSink {
+        void write(ResultSet rs) throws SQLException;
+        void close();
+    }
+
+    private static final class CsvSink implements RowSink {
+        private final Writer w;
+
+        CsvSink(OutputStream out) {
+            this.w = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+            io(() -> w.write(String.join(",", COLUMNS) + "\n"));
+        }
+
+        @Override public void write(ResultSet rs) throws SQLException {
+            var sb = new StringBuilder(160);
+            sb.append(rs.getLong(1)).append(',')
+              .append(ts(rs.getTimestamp(2))).append(',')
+              .append(csv(rs.getString(3))).append(',')
+              .append(csv(rs.getString(4))).append(',')
+              .append(csv(rs.getString(5))).append(',')
+              .append(csv(rs.getString(6))).append(',')
+              .append(csv(rs.getString(7))).append(',')
+              .append(dec(rs.getBigDecimal(8))).append(',')
+              .append(dec(rs.getBigDecimal(9))).append(',')
+              .append(dec(rs.getBigDecimal(10))).append(',')
+              .append(csv(rs.getString(11))).append(',')
+              .append(csv(rs.getString(12))).append('\n');
+            io(() -> w.write(sb.toString()));
+        }
+
+        @Override public void close() { io(w::flush); }
+
+        private static String csv(String s) {
+            if (s == null) return "";
+            if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0 && s.indexOf('\r') < 0) return s;
+            return '"' + s.replace("\"", "\"\"") + '"';
+        }
+        private static String dec(BigDecimal d) { return d == null ? "" : d.toPlainString(); }
+        private static String ts(Timestamp t) { return t == null ? "" : t.toInstant().toString(); }
+    }
+
+    private final class NdjsonSink implements RowSink {
+        private final JsonGenerator g;
+
+        NdjsonSink(OutputStream out) {
+            try {
+                this.g = json.getFactory().createGenerator(out, JsonEncoding.UTF8);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            // one object per line, not an array
+            this.g.setRootValueSeparator(null);
+        }
+
+        @Override public void write(ResultSet rs) throws SQLException {
+            io(() -> {
+                g.writeStartObject();
+                g.writeNumberField(COLUMNS[0], rs.getLong(1));
+                Timestamp ts = rs.getTimestamp(2);
+                g.writeStringField(COLUMNS[1], ts == null ? null : ts.toInstant().toString());
+                for (int c = 3; c <= 7; c++) g.writeStringField(COLUMNS[c - 1], rs.getString(c));
+                for (int c = 8; c <= 10; c++) {
+                    BigDecimal d = rs.getBigDecimal(c);
+                    if (d == null) g.writeNullField(COLUMNS[c - 1]);
+                    else g.writeNumberField(COLUMNS[c - 1], d);
+                }
+                g.writeStringField(COLUMNS[10], rs.getString(11));
+                g.writeStringField(COLUMNS[11], rs.getString(12));
+                g.writeEndObject();
+                g.writeRaw('\n');
+            });
+        }
+
+        @Override public void close() { io(g::flush); }
+    }
+
+    @FunctionalInterface private interface IoAction { void run() throws IOException, SQLException; }
+
+    private static void io(IoAction a) {
+        try {
+            a.run();
+        } catch (IOException e) {
+            // client went away mid-download: abort the query instead of draining the cursor
+            throw new UncheckedIOException(e);
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String n(String s) {
+        return (s == null || s.isBlank()) ? null : s;
+    }
+}
@@ -0,0 +1,6 @@
+package com.sandkev.cryptio.tx;
+
+import java.util.List;
+
+/** One keyset page of tx rows; nextCursor is null on the last page. */
+public record TxPage(List<TxRow> rows, String nextCursor) {}
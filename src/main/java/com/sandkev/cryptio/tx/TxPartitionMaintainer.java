@@ -0,0 +1,59 @@
+package com.sandkev.cryptio.tx;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Year;
+import java.time.ZoneOffset;
+import java.util.TreeSet;
+
+/**
+ * Keeps the yearly tx partitions ahead of the data on Postgres: this year and next are created if missing,
+ * and any year that already spilled into tx_default gets its partition (ensure_tx_partition moves those
+ * rows across). A no-op on other databases, where tx is not partitioned.
+ */
+@Slf4j
+@Component
+public class TxPartitionMaintainer {
+
+    private final JdbcTemplate jdbc;
+    private volatile Boolean partitioned;
+
+    public TxPartitionMaintainer(JdbcTemplate jdbc) { this.jdbc = jdbc; }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        maintain();
+    }
+
+    @Scheduled(initialDelayString = "${cryptio.tx.partitions.initial-delay:P1D}",
+               fixedDelayString = "${cryptio.tx.partitions.interval:P1D}")
+    public void maintain() {
+        if (!partitioned()) return;
+        int thisYear = Year.now(ZoneOffset.UTC).getValue();
+        var years = new TreeSet<Integer>();
+        years.add(thisYear);
+        years.add(thisYear + 1);
+        years.addAll(jdbc.queryForList("select distinct cast(extract(year from ts at time zone 'UTC') as int) from tx_default",
+                Integer.class));
+        for (int year : years) {
+            try {
+                jdbc.queryForList("select ensure_tx_partition(?)", year);
+            } catch (RuntimeException e) {
+                log.warn("Could not ensure tx partition for {}: {}", year, e.toString());
+            }
+        }
+    }
+
+    private boolean partitioned() {
+        if (partitioned == null) {
+            partitioned = "PostgreSQL".equals(jdbc.execute((ConnectionCallback<String>) c -> c.getMetaData().getDatabaseProductName()));
+        }
+        return partitioned;
+    }
+}
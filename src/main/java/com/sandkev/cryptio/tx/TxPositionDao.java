@@ -0,0 +1,131 @@
+package com.sandkev.cryptio.tx;
+
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Running per-(exchange, account_ref, asset) aggregate of tx: net quantity, fees paid in the asset,
+ * last ts and row count. Kept up to date by TxWriterImpl in the same transaction as the tx write,
+ * so reads cost O(assets) instead of re-summing the whole tx table.
+ * On Postgres the upsert is INSERT .. ON CONFLICT: two writers creating the same position both land on the
+ * primary key there, where MERGE would let both take the NOT MATCHED branch and fail one tx write.
+ */
+@Repository
+public class TxPositionDao {
+
+    public record Position(String exchange, String accountRef, String asset,
+                           BigDecimal netQty, BigDecimal feeTotal, Instant lastTs, long rowCount) {}
+
+    private static final Set<String> INFLOW  = Set.of("BUY", "DEPOSIT", "CONVERT_IN", "REWARD");
+    private static final Set<String> OUTFLOW = Set.of("SELL", "WITHDRAW", "CONVERT_OUT");
+
+    private static final String MERGE = """
+        merge into tx_position p
+        using (select cast(? as varchar(64))     as exchange,
+                      cast(? as varchar(64))     as account_ref,
+                      cast(? as varchar(32))     as asset,
+                      cast(? as numeric(38,18))  as qty_delta,
+                      cast(? as numeric(38,18))  as fee_delta,
+                      cast(? as timestamp)       as ts,
+                      cast(? as bigint)          as row_delta) s
+           on p.exchange = s.exchange and p.account_ref = s.account_ref and p.asset = s.asset
+         when matched then update set
+              net_qty   = p.net_qty + s.qty_delta,
+              fee_total = p.fee_total + s.fee_delta,
+              last_ts   = greatest(p.last_ts, s.ts),
+              row_count = p.row_count + s.row_delta
+         when not matched then insert (exchange, account_ref, asset, net_qty, fee_total, last_ts, row_count)
+              values (s.exchange, s.account_ref, s.asset, s.qty_delta, s.fee_delta, s.ts, s.row_delta)
+        """;
+
+    private static final String UPSERT_PG = """
+        insert into tx_position as p (exchange, account_ref, asset, net_qty, fee_total, last_ts, row_count)
+        values (?, ?, ?, ?, ?, ?, ?)
+        on conflict (exchange, account_ref, asset) do update set
+              net_qty   = p.net_qty + excluded.net_qty,
+              fee_total = p.fee_total + excluded.fee_total,
+              last_ts   = greatest(p.last_ts, excluded.last_ts),
+              row_count = p.row_count + excluded.row_count
+        """;
+
+    private final JdbcTemplate jdbc;
+    private volatile Boolean postgres;
+
+    public TxPositionDao(JdbcTemplate jdbc) { this.jdbc = jdbc; }
+
+    /** +qty for inflows, -qty for outflows, 0 otherwise (same rule the reconciliation used in SQL). */
+    public static BigDecimal signedQty(String type, BigDecimal qty) {
+        if (type == null || qty == null) return BigDecimal.ZERO;
+        String t = type.toUpperCase(Locale.ROOT);
+        if (INFLOW.contains(t)) return qty;
+        if (OUTFLOW.contains(t)) return qty.negate();
+        return BigDecimal.ZERO;
+    }
+
+    /** Add deltas to one position row, creating it if missing. Null account is stored as ''. */
+    public void apply(String exchange, String accountRef, String asset,
+                      BigDecimal qtyDelta, BigDecimal feeDelta, Instant ts, int rowDelta) {
+        if (asset == null) return;
+        jdbc.update(postgres() ? UPSERT_PG : MERGE,
+                exchange, accountRef == null ? "" : accountRef, asset,
+                nz(qtyDelta), nz(feeDelta), ts == null ? null : Timestamp.from(ts), rowDelta
+        );
+    }
+
+    /** Positions for one exchange/account (both canonical, see shared.Canonical). */
+    public List<Position> positions(String exchange, String accountRef) {
+        return jdbc.query("""
+            select exchange, account_ref, asset, net_qty, fee_total, last_ts, row_count
+              from tx_position
+             where exchange=? and account_ref=?
+            """, (rs, i) -> new Position(
+                rs.getString(1), rs.getString(2), rs.getString(3),
+                rs.getBigDecimal(4), rs.getBigDecimal(5),
+                rs.getTimestamp(6) == null ? null : rs.getTimestamp(6).toInstant(),
+                rs.getLong(7)
+        ), exchange, accountRef == null ? "" : accountRef);
+    }
+
+    /** Recompute every position from tx (one pass). Use after bulk loads or if the aggregate drifts. */
+    @Transactional
+    public int rebuild() {
+        jdbc.update("delete from tx_position");
+        return jdbc.update("""
+            insert into tx_position (exchange, account_ref, asset, net_qty, fee_total, last_ts, row_count)
+            select exchange, account_ref, asset, sum(qty), sum(fee), max(ts), sum(n)
+              from (
+                    select exchange, coalesce(account_ref, '') as account_ref, base as asset,
+                           case
+                             when type in ('BUY','DEPOSIT','CONVERT_IN','REWARD') then quantity
+                             when type in ('SELL','WITHDRAW','CONVERT_OUT')       then -quantity
+                             else 0
+                           end as qty,
+                           0 as fee, ts, 1 as n
+                      from tx
+                    union all
+                    select exchange, coalesce(account_ref, ''), fee_asset, 0, fee, ts, 0
+                      from tx
+                     where fee is not null and fee_asset is not null
+                   ) x
+             group by exchange, account_ref, asset
+            """);
+    }
+
+    private boolean postgres() {
+        if (postgres == null) {
+            postgres = "PostgreSQL".equals(jdbc.execute((ConnectionCallback<String>) c -> c.getMetaData().getDatabaseProductName()));
+        }
+        return postgres;
+    }
+
+    private static BigDecimal nz(BigDecimal x) { return x == null ? BigDecimal.ZERO : x; }
+}
@@ -4,6 +4,7 @@ package com.sandkev.cryptio.tx;
 //package com.sandkev.cryptio.tx;
 
 import com.sandkev.cryptio.domain.Tx;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -17,7 +18,7 @@ public interface TxRepository extends JpaRepository<Tx, Long> {
     @Query("""
         select t from Tx t
          where (:asset    is null or upper(t.asset) = upper(:asset))
-           and (:exchange is null or lower(t.exchange) = lower(:exchange))
+           and (:exchange is null or t.exchange = :exchange)
            and (:account  is null or t.accountRef = :account)
          order by t.ts desc
     """)
@@ -28,14 +29,16 @@ public interface TxRepository extends JpaRepository<Tx, Long> {
     );
 
     // --- New 6-arg overload for UI filtering ---
+    // fromTs/toTs are always bound (see TxService) so the ts range stays a plain predicate
+    // and Postgres can prune tx partitions instead of scanning every year.
     @Query("""
         select t from Tx t
          where (:asset    is null or upper(t.asset) = upper(:asset))
-           and (:exchange is null or lower(t.exchange) = lower(:exchange))
+           and (:exchange is null or t.exchange = :exchange)
            and (:account  is null or t.accountRef = :account)
            and (:type     is null or upper(t.type) = upper(:type))
-           and (:fromTs   is null or t.ts >= :fromTs)
-           and (:toTs     is null or t.ts <  :toTs)
+           and t.ts >= :fromTs
+           and t.ts <  :toTs
          order by t.ts desc
     """)
     List<Tx> findFiltered(
@@ -46,4 +49,31 @@ public interface TxRepository extends JpaRepository<Tx, Long> {
             @Param("fromTs") Instant fromTs,
             @Param("toTs") Instant toTs
     );
+
+    // --- Keyset page (ts desc, id desc) as lightweight projections for /tx browsing ---
+    @Query("""
+        select new com.sandkev.cryptio.tx.TxRow(
+                 t.id, t.ts, t.exchange, t.accountRef, t.asset, t.quote, t.type,
+                 t.qty, t.price, t.fee, t.feeAsset, t.externalId)
+          from Tx t
+         where (:asset    is null or upper(t.asset) = upper(:asset))
+           and (:exchange is null or t.exchange = :exchange)
+           and (:account  is null or t.accountRef = :account)
+           and (:type     is null or upper(t.type) = upper(:type))
+           and t.ts >= :fromTs
+           and t.ts <  :toTs
+           and (t.ts < :cursorTs or (t.ts = :cursorTs and t.id < :cursorId))
+         order by t.ts desc, t.id desc
+    """)
+    List<TxRow> findPage(
+            @Param("asset") String asset,
+            @Param("exchange") String exchange,
+            @Param("account") String account,
+            @Param("type") String type,
+            @Param("fromTs") Instant fromTs,
+            @Param("toTs") Instant toTs,
+            @Param("cursorTs") Instant cursorTs,
+            @Param("cursorId") long cursorId,
+            Limit limit
+    );
 }
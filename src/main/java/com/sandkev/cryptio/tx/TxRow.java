@@ -0,0 +1,21 @@
+package com.sandkev.cryptio.tx;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Read-only projection of a tx row for browsing/export (no managed JPA entity, no dirty checking).
+ * Field names match what tx.html used on the Tx entity.
+ */
+public record TxRow(Long id,
+                    Instant ts,
+                    String exchange,
+                    String accountRef,
+                    String asset,
+                    String quote,
+                    String type,
+                    BigDecimal qty,
+                    BigDecimal price,
+                    BigDecimal fee,
+                    String feeAsset,
+                    String externalId) {}
@@ -0,0 +1,44 @@
+package com.sandkev.cryptio.tx;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+
+/**
+ * 64-bit fingerprint of the economic fields of a tx row (the ones TxWriterImpl's UPDATE can change).
+ * Numbers are compared by value (1.0 == 1.000000000000000000), so a value read back from a
+ * numeric(38,18) column hashes the same as the one the ingester passed in.
+ */
+public final class TxRowHash {
+
+    private TxRowHash() {}
+
+    public static long of(BigDecimal quantity, BigDecimal price, BigDecimal fee, String feeAsset, Instant ts) {
+        String canonical = String.join("|",
+                dec(quantity),
+                dec(price),
+                dec(fee),
+                feeAsset == null ? "" : feeAsset,
+                ts == null ? "" : String.valueOf(ts.toEpochMilli())
+        );
+        byte[] d = sha256(canonical.getBytes(StandardCharsets.UTF_8));
+        long h = 0;
+        for (int i = 0; i < 8; i++) h = (h << 8) | (d[i] & 0xffL);
+        return h;
+    }
+
+    private static String dec(BigDecimal d) {
+        if (d == null) return "";
+        return d.signum() == 0 ? "0" : d.stripTrailingZeros().toPlainString();
+    }
+
+    private static byte[] sha256(byte[] in) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(in);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package com.sandkev.cryptio.tx;
 
 import com.sandkev.cryptio.domain.Tx;
+import com.sandkev.cryptio.shared.Canonical;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
@@ -8,13 +10,20 @@ import java.util.List;
 
 @Service
 public class TxService {
+    // Open-ended bounds for the ts range; keeps the predicate sargable / partition-prunable.
+    static final Instant MIN_TS = Instant.parse("1970-01-01T00:00:00Z");
+    static final Instant MAX_TS = Instant.parse("9999-12-31T00:00:00Z");
+
+    public static final int DEFAULT_PAGE_SIZE = 100;
+    static final int MAX_PAGE_SIZE = 1000;
+
     private final TxRepository repo;
 
     public TxService(TxRepository repo) { this.repo = repo; }
 
     // Legacy 3-arg version
     public List<Tx> list(String asset, String exchange, String account) {
-        return repo.findFiltered(n(asset), n(exchange), n(account));
+        return repo.findFiltered(n(asset), Canonical.exchange(exchange), Canonical.account(account));
     }
 
     // New 6-arg version for dashboard/transaction page
@@ -26,14 +35,47 @@ public class TxService {
                                  Instant to) {
         return repo.findFiltered(
                 n(asset),
-                n(exchange),
-                n(account),
+                Canonical.exchange(exchange),
+                Canonical.account(account),
                 n(type),
-                from,
-                to
+                from == null ? MIN_TS : from,
+                to == null ? MAX_TS : to
         );
     }
 
+    /**
+     * Keyset page for the /tx browser: rows strictly after {@code cursor} in (ts desc, id desc) order.
+     * Costs one index range scan of pageSize+1 rows regardless of table size.
+     */
+    public TxPage page(String exchange,
+                       String account,
+                       String asset,
+                       String type,
+                       Instant from,
+                       Instant to,
+                       String cursor,
+                       int pageSize) {
+        int size = Math.max(1, Math.min(pageSize, MAX_PAGE_SIZE));
+        TxCursor after = TxCursor.decode(cursor);
+
+        // fetch one extra row to know whether another page exists
+        List<TxRow> rows = repo.findPage(
+                n(asset),
+                Canonical.exchange(exchange),
+                Canonical.account(account),
+                n(type),
+                from == null ? MIN_TS : from,
+                to == null ? MAX_TS : to,
+                after.ts(),
+                after.id(),
+                Limit.of(size + 1)
+        );
+        if (rows.size() <= size) return new TxPage(rows, null);
+
+        List<TxRow> pageRows = rows.subList(0, size);
+        return new TxPage(List.copyOf(pageRows), TxCursor.after(pageRows.getLast()).encode());
+    }
+
     private static String n(String s) {
         return (s == null || s.isBlank()) ? null : s;
     }
@@ -5,21 +5,26 @@ import com.sandkev.cryptio.domain.Tx;
 
 import java.math.BigDecimal;
 import java.time.Instant;
+import java.util.function.Supplier;
 
 public interface TxUpserter extends TxWriter {
     Tx convertTx(String exchange, String accountRef, String asset, String dir, BigDecimal qty, Instant ts, String orderId);
 
-    int upsert(String exchange,
-               String accountRef,
-               String base,
-               String quote,
-               String type,
-               BigDecimal quantity,
-               BigDecimal price,
-               BigDecimal fee,
-               String feeAsset,
-               Instant ts,
-               String externalId);
-
+    /** Insert or converge one row keyed by (exchange, externalId); writes only when the row_hash differs. */
+    UpsertOutcome upsert(String exchange,
+                         String accountRef,
+                         String base,
+                         String quote,
+                         String type,
+                         BigDecimal quantity,
+                         BigDecimal price,
+                         BigDecimal fee,
+                         String feeAsset,
+                         Instant ts,
+                         String externalId);
 
+    /** Run several upserts (e.g. one ingest page) so their change events go out as one batch. */
+    default <T> T batch(Supplier<T> work) {
+        return work.get();
+    }
 }
\ No newline at end of file
@@ -2,32 +2,54 @@
 package com.sandkev.cryptio.tx;
 
 import com.sandkev.cryptio.domain.Tx;
+import com.sandkev.cryptio.events.ChangeEvents;
+import com.sandkev.cryptio.shared.Canonical;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.sql.Timestamp;
 import java.time.Instant;
+import java.util.List;
 import java.util.Locale;
 import java.util.UUID;
+import java.util.function.Supplier;
 
 @Repository
 public class TxWriterImpl implements TxWriter, TxUpserter {
 
     private final JdbcTemplate jdbc;
+    private final TxPositionDao positions;
+    private final KnownTxIndex known;
+    private final ChangeEvents events;
 
-    public TxWriterImpl(JdbcTemplate jdbc) { this.jdbc = jdbc; }
+    public TxWriterImpl(JdbcTemplate jdbc, TxPositionDao positions, KnownTxIndex known, ChangeEvents events) {
+        this.jdbc = jdbc;
+        this.positions = positions;
+        this.known = known;
+        this.events = events;
+    }
+
+    /** Change events of the upserts inside {@code work} are published together when it returns. */
+    @Override
+    public <T> T batch(Supplier<T> work) {
+        return events.batched(work);
+    }
 
     /**
      * Idempotent upsert into tx using unique (exchange, external_id).
      * Keep 'id' auto-generated; never assign it.
-     *
-     * @return
+     * An existing row is only rewritten when its row_hash (see {@link TxRowHash}) changes, so re-ingesting
+     * history costs a read per row and no writes.
+     * tx_position is adjusted in the same transaction, so the aggregate never disagrees with tx;
+     * a {@link com.sandkev.cryptio.events.TxChangedEvent} goes out after commit.
      */
     @Override
-    public int upsert(
+    @Transactional
+    public UpsertOutcome upsert(
             String exchange,
             String accountRef,
             String base,
@@ -40,49 +62,127 @@ public class TxWriterImpl implements TxWriter, TxUpserter {
             Instant ts,
             String externalId
     ) {
+        exchange = Canonical.exchange(exchange);
+        accountRef = Canonical.account(accountRef);
 
-        // 1) Try to INSERT only if missing (unique index on (exchange, external_id) must exist)
-        int inserted = jdbc.update("""
-        insert into tx (exchange, account_ref, base, quote, type, quantity, price, fee, fee_asset, ts, external_id)
-        select ?,?,?,?,?,?,?,?,?,?,?
-        where not exists (
-            select 1 from tx where exchange=? and external_id=?
-        )
-        """,
-                exchange, accountRef, base, quote, type,
-                quantity, price, fee, feeAsset, Timestamp.from(ts), externalId,
-                exchange, externalId
-        );
-        if (inserted == 1) return 1; // inserted
+        // 0) Already stored with identical economic fields (typical on re-runs): nothing to do, skip the DB.
+        long rowHash = TxRowHash.of(quantity, price, fee, feeAsset, ts);
+        if (known.isUnchanged(exchange, externalId, rowHash)) return UpsertOutcome.UNCHANGED;
 
-        // 2) Optional UPDATE to converge data for an existing row.
-        //    Return the number of rows actually updated (usually 1; could be 0 if values identical).
-        return jdbc.update("""
+        // 1) INSERT only if missing. The check alone races; H2 backs it with a unique key on (exchange, external_id),
+        //    partitioned Postgres (where ts must be part of any unique key) with the tx_guard_external_id trigger (V13)
+        var stored = stored(exchange, externalId);
+        if (stored.isEmpty()) {
+            int inserted = jdbc.update("""
+            insert into tx (exchange, account_ref, base, quote, type, quantity, price, fee, fee_asset, ts, external_id, row_hash)
+            select ?,?,?,?,?,?,?,?,?,?,?,?
+            where not exists (
+                select 1 from tx where exchange=? and external_id=?
+            )
+            """,
+                    exchange, accountRef, base, quote, type,
+                    quantity, price, fee, feeAsset, Timestamp.from(ts), externalId, rowHash,
+                    exchange, externalId
+            );
+            if (inserted == 1) {
+                applyPosition(exchange, accountRef, base, type, quantity, fee, feeAsset, ts, 1, 1);
+                known.record(exchange, externalId, rowHash);
+                changed(exchange, accountRef, base, feeAsset, UpsertOutcome.INSERTED, ts, ts);
+                return UpsertOutcome.INSERTED;
+            }
+            stored = stored(exchange, externalId); // lost a race with a concurrent insert
+            if (stored.isEmpty()) return UpsertOutcome.UNCHANGED;
+        }
+
+        // 2) Converge the existing row; null inputs keep the stored value (coalesce semantics).
+        var old = stored.getFirst();
+        BigDecimal newQty = quantity != null ? quantity : old.quantity();
+        BigDecimal newPrice = price != null ? price : old.price();
+        BigDecimal newFee = fee != null ? fee : old.fee();
+        String newFeeAsset = feeAsset != null ? feeAsset : old.feeAsset();
+        long newHash = TxRowHash.of(newQty, newPrice, newFee, newFeeAsset, ts);
+
+        long oldHash = old.rowHash() != null ? old.rowHash()
+                : TxRowHash.of(old.quantity(), old.price(), old.fee(), old.feeAsset(), old.ts());
+        if (oldHash == newHash) {
+            // rows written before row_hash existed get it filled in once, then never touched again
+            if (old.rowHash() == null) {
+                jdbc.update("update tx set row_hash=? where exchange=? and external_id=? and row_hash is null",
+                        newHash, exchange, externalId);
+            }
+            known.record(exchange, externalId, newHash);
+            return UpsertOutcome.UNCHANGED;
+        }
+
+        int updated = jdbc.update("""
         update tx
-           set quantity = coalesce(?, quantity),
-               price    = coalesce(?, price),
-               fee      = coalesce(?, fee),
-               fee_asset= coalesce(?, fee_asset),
-               ts       = coalesce(?, ts)
+           set quantity = ?,
+               price    = ?,
+               fee      = ?,
+               fee_asset= ?,
+               ts       = ?,
+               row_hash = ?
          where exchange=? and external_id=?
+           and (row_hash is null or row_hash <> ?)
         """,
-                quantity, price, fee, feeAsset, Timestamp.from(ts),
-                exchange, externalId
+                newQty, newPrice, newFee, newFeeAsset, Timestamp.from(ts), newHash,
+                exchange, externalId, newHash
         );
-//        jdbc.update("""
-//            merge into tx (exchange, account_ref, base, quote, type, quantity, price, fee, fee_asset, ts, external_id)
-//            key (exchange, external_id)
-//            values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
-//        """,
-//                exchange, accountRef, base, quote, type,
-//                nz(quantity), price, fee, feeAsset,
-//                Timestamp.from(ts), externalId
-//        );
+        known.record(exchange, externalId, newHash);
+        if (updated == 0) return UpsertOutcome.UNCHANGED; // a concurrent writer converged it first
+
+        // undo the old contribution, then apply the converged one
+        applyPosition(exchange, old.accountRef(), old.base(), old.type(), old.quantity(), old.fee(), old.feeAsset(), old.ts(), -1, 0);
+        applyPosition(exchange, old.accountRef(), old.base(), old.type(), newQty, newFee, newFeeAsset, ts, 1, 0);
+        Instant from = old.ts().isBefore(ts) ? old.ts() : ts;
+        Instant to = old.ts().isAfter(ts) ? old.ts() : ts;
+        changed(exchange, old.accountRef(), old.base(), newFeeAsset, UpsertOutcome.UPDATED, from, to);
+        if (old.feeAsset() != null && !old.feeAsset().equals(newFeeAsset)) {
+            events.txWritten(exchange, old.accountRef(), old.feeAsset(), UpsertOutcome.UPDATED, from, to);
+        }
+        return UpsertOutcome.UPDATED;
+    }
+
+    private void changed(String exchange, String accountRef, String base, String feeAsset,
+                         UpsertOutcome outcome, Instant from, Instant to) {
+        events.txWritten(exchange, accountRef, base, outcome, from, to);
+        if (feeAsset != null && !feeAsset.equals(base)) events.txWritten(exchange, accountRef, feeAsset, outcome, from, to);
+    }
+
+    private List<Contribution> stored(String exchange, String externalId) {
+        return jdbc.query("""
+        select account_ref, base, type, quantity, price, fee, fee_asset, ts, row_hash from tx where exchange=? and external_id=?
+        """, (rs, i) -> new Contribution(rs.getString(1), rs.getString(2), rs.getString(3),
+                rs.getBigDecimal(4), rs.getBigDecimal(5), rs.getBigDecimal(6), rs.getString(7), rs.getTimestamp(8).toInstant(),
+                rs.getObject(9) == null ? null : rs.getLong(9)),
+                exchange, externalId);
     }
 
     private static BigDecimal nz(BigDecimal x) { return x == null ? BigDecimal.ZERO : x; }
 
+    /** The stored fields of a tx row that feed tx_position / the row hash (rowHash null for rows predating V7). */
+    private record Contribution(String accountRef, String base, String type,
+                                BigDecimal quantity, BigDecimal price, BigDecimal fee, String feeAsset, Instant ts,
+                                Long rowHash) {}
+
+    /**
+     * Add (sign=1) or remove (sign=-1) one tx row's effect on tx_position:
+     * signed quantity on the base asset, fee on the fee asset.
+     */
+    private void applyPosition(String exchange, String accountRef, String base, String type,
+                               BigDecimal quantity, BigDecimal fee, String feeAsset,
+                               Instant ts, int sign, int rowDelta) {
+        BigDecimal s = BigDecimal.valueOf(sign);
+        positions.apply(exchange, accountRef, base,
+                TxPositionDao.signedQty(type, quantity).multiply(s), BigDecimal.ZERO, ts, rowDelta);
+        if (fee != null && feeAsset != null) {
+            positions.apply(exchange, accountRef, feeAsset,
+                    BigDecimal.ZERO, fee.multiply(s), ts, 0);
+        }
+    }
+
     @Override
+    @Transactional
     public int write(Tx tx) {
         // --- required fields ---
         if (tx.getExchange() == null) throw new IllegalArgumentException("Tx.exchange is required");
@@ -102,7 +202,7 @@ public class TxWriterImpl implements TxWriter, TxUpserter {
                 ? tx.getQuote()
                 : tx.getFeeAsset();
 
-        return upsert(
+        var outcome = upsert(
                 tx.getExchange(),
                 tx.getAccountRef(),               // nullable
                 tx.getAsset(),
@@ -115,6 +215,7 @@ public class TxWriterImpl implements TxWriter, TxUpserter {
                 tx.getTs(),
                 externalId
         );
+        return outcome == UpsertOutcome.UNCHANGED ? 0 : 1;
     }
 
     /** Stable surrogate ID from key economic fields + timestamp (UUIDv3-style). */
@@ -0,0 +1,9 @@
+package com.sandkev.cryptio.tx;
+
+/** What a single {@link TxUpserter#upsert} call did to the tx table. */
+public enum UpsertOutcome {
+    INSERTED,
+    UPDATED,
+    /** Row already stored with the same row_hash: no write issued. */
+    UNCHANGED
+}
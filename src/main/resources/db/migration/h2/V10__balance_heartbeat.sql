@@ -0,0 +1,13 @@
+-- V10__balance_heartbeat.sql
+-- One row per balance ingest, whether or not any amount changed. balance_snapshot only gets rows for
+-- assets whose amounts changed (zero row when an asset disappears), so holdings at time t are the last
+-- snapshot row per asset at or before t, and the heartbeat says the account was checked.
+create table if not exists balance_heartbeat (
+    id                  bigint generated always as identity primary key,
+    exchange_account_id bigint    not null,
+    as_of               timestamp not null,
+    asset_count         int       not null,    -- non-zero assets held
+    changed_count       int       not null,    -- snapshot rows written
+    foreign key (exchange_account_id) references exchange_account(id) on delete cascade
+);
+create index bhb_idx on balance_heartbeat(exchange_account_id, as_of desc);
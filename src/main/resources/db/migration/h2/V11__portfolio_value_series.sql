@@ -0,0 +1,16 @@
+-- V11__portfolio_value_series.sql
+-- Total portfolio value per (account, vs), pre-aggregated into minute ('m'), hour ('h') and day ('d')
+-- buckets by PortfolioSeriesRecorder. close_value is the latest sample in the bucket.
+create table if not exists portfolio_value_series (
+    account_ref  varchar(64)    not null,
+    vs           varchar(16)    not null,
+    res          varchar(1)     not null,
+    bucket_ts    timestamp      not null,
+    close_value  numeric(38,18) not null,
+    min_value    numeric(38,18) not null,
+    max_value    numeric(38,18) not null,
+    sample_ts    timestamp      not null,
+    samples      int            not null default 1,
+    primary key (account_ref, vs, res, bucket_ts)   -- every chart read is one range scan on this
+);
+create index pvs_res_ts_idx on portfolio_value_series(res, bucket_ts);   -- minute trimming
@@ -0,0 +1,24 @@
+-- Canonicalise exchange codes / account refs so readers can use plain equality (no lower(...)).
+-- Mirrors com.sandkev.cryptio.shared.Canonical: exchange -> lower(trim), account_ref -> trim.
+
+-- keep one row per (canonical exchange, external id): the already-canonical one if present, else the lowest id;
+-- "Binance" and "BINANCE" with no "binance" row would otherwise both become "binance" and hit the unique key
+delete from tx t
+where exists (
+      select 1 from tx c
+      where lower(trim(c.exchange)) = lower(trim(t.exchange))
+        and c.external_id = t.external_id
+        and c.id <> t.id
+        and (case when c.exchange = lower(trim(c.exchange)) then 0 else 1 end
+               < case when t.exchange = lower(trim(t.exchange)) then 0 else 1 end
+             or (case when c.exchange = lower(trim(c.exchange)) then 0 else 1 end
+                   = case when t.exchange = lower(trim(t.exchange)) then 0 else 1 end
+                 and c.id < t.id))
+  );
+
+update tx set exchange = lower(trim(exchange)) where exchange <> lower(trim(exchange));
+update tx set account_ref = trim(account_ref)  where account_ref <> trim(account_ref);
+
+-- (exchange, account_ref) prefix still served; base added for reconciliation / asset-universe scans
+drop index if exists tx_exchange_acc_idx;
+create index if not exists tx_exchange_acc_base_idx on tx(exchange, account_ref, base);
@@ -0,0 +1,2 @@
+-- Serves /tx keyset paging: order by ts desc, id desc with a (ts, id) seek predicate.
+create index if not exists tx_ts_id_idx on tx(ts desc, id desc);
@@ -0,0 +1,42 @@
+-- V8__latest_balance.sql
+-- Latest balance per (account, asset), upserted by BalanceIngestService alongside each snapshot write.
+-- Replaces the row_number() scan over all of balance_snapshot, so reads no longer grow with history.
+create table if not exists latest_balance (
+    exchange_account_id bigint         not null,
+    asset_id            bigint         not null,
+    exchange_symbol     varchar(64)    not null,
+    free_amt            numeric(38,18) not null default 0,
+    locked_amt          numeric(38,18) not null default 0,
+    as_of               timestamp      not null,
+    primary key (exchange_account_id, asset_id),
+    foreign key (exchange_account_id) references exchange_account(id) on delete cascade,
+    foreign key (asset_id) references asset(id) on delete restrict
+);
+
+-- seed from history
+insert into latest_balance (exchange_account_id, asset_id, exchange_symbol, free_amt, locked_amt, as_of)
+select exchange_account_id, asset_id, exchange_symbol, free_amt, locked_amt, as_of
+from (
+    select bs.*,
+           row_number() over (
+             partition by exchange_account_id, asset_id
+             order by as_of desc, id desc
+           ) rn
+    from balance_snapshot bs
+) x
+where x.rn = 1;
+
+-- same columns as before, now a plain join over one row per (account, asset)
+drop view if exists v_latest_balance;
+create view v_latest_balance as
+select e.code          as exchange,
+       ea.account_ref  as account,
+       a.symbol        as asset,
+       lb.free_amt,
+       lb.locked_amt,
+       (lb.free_amt + lb.locked_amt) as total_amt,
+       lb.as_of
+from latest_balance lb
+join exchange_account ea on ea.id = lb.exchange_account_id
+join exchange e           on e.id  = ea.exchange_id
+join asset a              on a.id  = lb.asset_id;
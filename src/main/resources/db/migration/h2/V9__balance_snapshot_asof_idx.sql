@@ -0,0 +1,3 @@
+-- V9__balance_snapshot_asof_idx.sql
+-- BalanceRetentionJob works through balance_snapshot one day of as_of at a time.
+create index if not exists bs_asof_idx on balance_snapshot(as_of);
@@ -0,0 +1,19 @@
+-- V11__price_point.sql
+-- Local CoinGecko price history, one row per (coin, vs, ts): daily points for the deep backfill,
+-- hourly for the recent window and for incremental appends. Read by PriceHistoryService.
+create table if not exists price_point (
+    coin_id  varchar(128)   not null,
+    vs       varchar(16)    not null,
+    ts       timestamptz    not null,
+    price    numeric(38,18) not null,
+    primary key (coin_id, vs, ts)       -- as-of lookups and index warm-up are range scans on this
+);
+
+-- Which (coin, vs) pairs are tracked, whether their one-off backfill is done, and the append cursor.
+create table if not exists price_history_state (
+    coin_id        varchar(128) not null,
+    vs             varchar(16)  not null,
+    backfilled_at  timestamptz,
+    last_ts        timestamptz,
+    primary key (coin_id, vs)
+);
@@ -0,0 +1,9 @@
+-- V12__coin_id_index.sql
+-- Symbol -> CoinGecko id, rebuilt from /coins/list by CoinGeckoIdResolver (overrides first, then
+-- market-cap rank for symbols several coins share). Lets a restart resolve ids without CoinGecko.
+create table if not exists coin_id_index (
+    symbol      varchar(64)  not null primary key,
+    coin_id     varchar(128) not null,
+    source      varchar(16)  not null,            -- override | ranked | list
+    updated_at  timestamptz  not null
+);
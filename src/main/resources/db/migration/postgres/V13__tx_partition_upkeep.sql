@@ -0,0 +1,50 @@
+-- V13__tx_partition_upkeep.sql
+
+-- 1) Idempotency key. V2 had to include ts in the unique constraint (partition key rule), so two
+-- concurrent inserts of the same (exchange, external_id) could both pass TxWriterImpl's
+-- "insert ... where not exists" check. Serialise inserts per key with a transaction-scoped advisory
+-- lock and drop the row when the key is already stored: the writer sees 0 rows inserted and
+-- converges the existing row, exactly as it does when it loses that race on H2's real unique key.
+-- The lock is keyed by a 64-bit hash, so an unrelated key sharing the hash only waits, never loses a row.
+create or replace function tx_guard_external_id()
+returns trigger language plpgsql as
+$$
+begin
+    if new.external_id is null then
+        return new;
+    end if;
+    perform pg_advisory_xact_lock(hashtextextended(new.exchange || ':' || new.external_id, 0));
+    -- id <> new.id: an update that moves a row to another year's partition re-inserts the same id
+    if exists (select 1 from tx where exchange = new.exchange and external_id = new.external_id and id <> new.id) then
+        return null;
+    end if;
+    return new;
+end;
+$$;
+
+-- row triggers on a partitioned parent are cloned to every partition (BEFORE triggers need Postgres 13+)
+create trigger tx_guard_external_id
+    before insert on tx
+    for each row execute function tx_guard_external_id();
+
+-- 2) Partitions. Rows that landed in tx_default make "create table ... partition of tx" fail for their
+-- year, so build the partition detached, move those rows across, then attach it.
+-- Called by TxPartitionMaintainer at startup and daily for this year, next year and any year found in tx_default.
+create or replace function ensure_tx_partition(yr int)
+returns void language plpgsql as
+$$
+declare
+    part_name text := format('tx_y%s', yr);
+    lo timestamptz := make_timestamptz(yr,     1, 1, 0, 0, 0, 'UTC');
+    hi timestamptz := make_timestamptz(yr + 1, 1, 1, 0, 0, 0, 'UTC');
+begin
+    if to_regclass(part_name) is not null then
+        return;
+    end if;
+    execute format('create table %I (like tx including defaults including constraints)', part_name);
+    execute format(
+        'with moved as (delete from tx_default where ts >= %L and ts < %L returning *) insert into %I select * from moved',
+        lo, hi, part_name);
+    execute format('alter table tx attach partition %I for values from (%L) to (%L)', part_name, lo, hi);
+end;
+$$;
@@ -0,0 +1,58 @@
+-- V2__tx_partitioned.sql
+
+-- 7) Normalised transactions, range-partitioned by ts (one partition per calendar year).
+-- Postgres requires the partition key in every unique constraint, so the idempotency key
+-- becomes (exchange, external_id, ts). TxWriterImpl still guards with "insert ... where not exists"
+-- on (exchange, external_id), so the upsert contract is unchanged for callers.
+create table tx (
+    id           bigserial,
+    exchange     varchar(64)    not null,
+    account_ref  varchar(64),
+    base         varchar(32)    not null,
+    quote        varchar(32)    not null,
+    type         varchar(16)    not null,            -- BUY, SELL, DEPOSIT, WITHDRAW, CONVERT_IN, CONVERT_OUT, REWARD
+    quantity     numeric(38,18) not null default 0,
+    price        numeric(38,18),
+    fee          numeric(38,18),
+    fee_asset    varchar(32),
+    ts           timestamptz    not null,
+    external_id  varchar(96),
+    primary key (id, ts),
+    constraint uq_tx_exchange_external unique (exchange, external_id, ts)
+) partition by range (ts);
+
+-- Indexes declared on the parent are created on every partition (current and future).
+create index tx_exchange_acc_idx on tx (exchange, account_ref);
+create index tx_pair_idx         on tx (base, quote);
+create index tx_ext_idx          on tx (exchange, external_id);   -- upsert existence probe
+-- ts is (nearly) append-ordered, so a BRIN index is tiny and enough to narrow range scans
+-- inside a partition; partition pruning does the coarse work.
+create index tx_ts_brin          on tx using brin (ts) with (pages_per_range = 32);
+
+-- Helper: create the yearly partition covering a given year (idempotent).
+create or replace function ensure_tx_partition(yr int)
+returns void language plpgsql as
+$$
+declare
+    part_name text := format('tx_y%s', yr);
+begin
+    execute format(
+        'create table if not exists %I partition of tx for values from (%L) to (%L)',
+        part_name,
+        make_timestamptz(yr,     1, 1, 0, 0, 0, 'UTC'),
+        make_timestamptz(yr + 1, 1, 1, 0, 0, 0, 'UTC')
+    );
+end;
+$$;
+
+-- Binance history starts 2017; pre-create a few years ahead (call ensure_tx_partition from app/cron later).
+do $$
+begin
+    for y in 2017..(extract(year from now())::int + 2) loop
+        perform ensure_tx_partition(y);
+    end loop;
+end;
+$$;
+
+-- Anything outside the pre-created range still lands somewhere instead of failing the insert.
+create table if not exists tx_default partition of tx default;
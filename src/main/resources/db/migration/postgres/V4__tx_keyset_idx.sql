@@ -0,0 +1,3 @@
+-- V4__tx_keyset_idx.sql
+-- Serves /tx keyset paging (order by ts desc, id desc); BRIN cannot return rows in order.
+create index if not exists tx_ts_id_idx on tx (ts desc, id desc);
@@ -0,0 +1,32 @@
+-- V5__tx_position.sql
+-- Per-asset running position derived from tx, maintained by TxWriterImpl in the same transaction.
+-- account_ref is never null here ('' stands for "no account") so it can be part of the key.
+create table if not exists tx_position (
+    exchange     varchar(64)    not null,
+    account_ref  varchar(64)    not null default '',
+    asset        varchar(32)    not null,
+    net_qty      numeric(38,18) not null default 0,   -- inflows - outflows of this asset
+    fee_total    numeric(38,18) not null default 0,   -- fees paid in this asset
+    last_ts      timestamptz,
+    row_count    bigint         not null default 0,   -- tx rows with base = asset
+    primary key (exchange, account_ref, asset)
+);
+
+-- seed from existing history (same rules as TxPositionDao.rebuild)
+insert into tx_position (exchange, account_ref, asset, net_qty, fee_total, last_ts, row_count)
+select exchange, account_ref, asset, sum(qty), sum(fee), max(ts), sum(n)
+  from (
+        select exchange, coalesce(account_ref, '') as account_ref, base as asset,
+               case
+                 when type in ('BUY','DEPOSIT','CONVERT_IN','REWARD') then quantity
+                 when type in ('SELL','WITHDRAW','CONVERT_OUT')       then -quantity
+                 else 0
+               end as qty,
+               0 as fee, ts, 1 as n
+          from tx
+        union all
+        select exchange, coalesce(account_ref, ''), fee_asset, 0, fee, ts, 0
+          from tx
+         where fee is not null and fee_asset is not null
+       ) x
+ group by exchange, account_ref, asset;
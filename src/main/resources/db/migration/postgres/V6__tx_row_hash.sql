@@ -0,0 +1,6 @@
+-- V6__tx_row_hash.sql
+-- 64-bit content hash of the economic fields (TxRowHash: quantity, price, fee, fee_asset, ts).
+-- TxWriterImpl only issues an UPDATE when it differs, so re-ingests stop rewriting tuples (no bloat, no WAL).
+-- Added on the partitioned parent, so every partition gets it; existing rows start null and are
+-- filled the next time they are re-ingested.
+alter table tx add column if not exists row_hash bigint;
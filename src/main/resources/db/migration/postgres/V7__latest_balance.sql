@@ -0,0 +1,37 @@
+-- V7__latest_balance.sql
+-- Latest balance per (account, asset), upserted by BalanceIngestService alongside each snapshot write.
+-- Replaces mv_latest_balance, which nothing refreshed and which had to re-scan all history when it was.
+create table if not exists latest_balance (
+    exchange_account_id bigint         not null references exchange_account(id) on delete cascade,
+    asset_id            bigint         not null references asset(id) on delete restrict,
+    exchange_symbol     varchar(64)    not null,
+    free_amt            numeric(38,18) not null default 0,
+    locked_amt          numeric(38,18) not null default 0,
+    as_of               timestamptz    not null,
+    primary key (exchange_account_id, asset_id)
+);
+
+-- seed from history
+insert into latest_balance (exchange_account_id, asset_id, exchange_symbol, free_amt, locked_amt, as_of)
+select distinct on (bs.exchange_account_id, bs.asset_id)
+       bs.exchange_account_id, bs.asset_id, bs.exchange_symbol, bs.free_amt, bs.locked_amt, bs.as_of
+from balance_snapshot bs
+order by bs.exchange_account_id, bs.asset_id, bs.as_of desc, bs.id desc;
+
+-- same columns as before, now a plain join over one row per (account, asset)
+drop view if exists v_latest_balance;
+drop function if exists refresh_latest_balance_mv();
+drop materialized view if exists mv_latest_balance;
+
+create view v_latest_balance as
+select e.code          as exchange,
+       ea.account_ref  as account,
+       a.symbol        as asset,
+       lb.free_amt,
+       lb.locked_amt,
+       (lb.free_amt + lb.locked_amt) as total_amt,
+       lb.as_of
+from latest_balance lb
+join exchange_account ea on ea.id = lb.exchange_account_id
+join exchange e           on e.id  = ea.exchange_id
+join asset a              on a.id  = lb.asset_id;
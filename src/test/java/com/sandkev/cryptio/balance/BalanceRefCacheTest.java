@@ -0,0 +1,68 @@
+package com.sandkev.cryptio.balance;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BalanceRefCacheTest {
+
+    private JdbcTemplate jdbc;
+    private TransactionTemplate tx;
+    private BalanceRefCache refs;
+
+    @BeforeEach
+    void schema() {
+        var ds = new DriverManagerDataSource("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        new ResourceDatabasePopulator(new ClassPathResource("db/migration/h2/V1__init.sql")).execute(ds);
+        jdbc = new JdbcTemplate(ds);
+        tx = new TransactionTemplate(new DataSourceTransactionManager(ds));
+        refs = new BalanceRefCache(jdbc);
+    }
+
+    @Test
+    void idsFromARolledBackTransactionAreNotCached() {
+        tx.executeWithoutResult(status -> {
+            refs.assetIds(List.of("BTC"));
+            refs.accountId(refs.exchangeId("binance"), "primary");
+            status.setRollbackOnly();
+        });
+
+        long btc = refs.assetIds(List.of("BTC")).get("BTC");
+        long account = refs.accountId(refs.exchangeId("binance"), "primary");
+
+        assertThat(jdbc.queryForObject("select symbol from asset where id=?", String.class, btc)).isEqualTo("BTC");
+        assertThat(jdbc.queryForObject("select account_ref from exchange_account where id=?", String.class, account))
+                .isEqualTo("primary");
+    }
+
+    @Test
+    void committedIdsAreReusedWithoutAnotherMerge() {
+        long btc = tx.execute(status -> refs.assetIds(List.of("BTC")).get("BTC"));
+        jdbc.update("delete from asset");      // only the cache can still answer now
+
+        assertThat(refs.assetIds(List.of("BTC"))).containsEntry("BTC", btc);
+    }
+
+    @Test
+    void aliasPointingAtAnotherAssetIsMergedAgain() {
+        long exchange = refs.exchangeId("kraken");
+        var ids = refs.assetIds(List.of("XBT", "BTC"));
+
+        refs.ensureAliases(exchange, Map.of("xbt", ids.get("XBT")));
+        tx.executeWithoutResult(status -> refs.ensureAliases(exchange, Map.of("xbt", ids.get("BTC"))));
+
+        assertThat(jdbc.queryForObject("select asset_id from asset_alias where exchange_id=? and alias='xbt'",
+                Long.class, exchange)).isEqualTo(ids.get("BTC"));
+    }
+}
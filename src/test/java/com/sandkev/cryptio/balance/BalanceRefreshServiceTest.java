@@ -0,0 +1,67 @@
+package com.sandkev.cryptio.balance;
+
+import com.sandkev.cryptio.portfolio.BalanceViewDao;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class BalanceRefreshServiceTest {
+
+    private final BalanceIngestService ingest = mock(BalanceIngestService.class);
+    private final BalanceViewDao balances = mock(BalanceViewDao.class);
+    private final BalanceRefreshService refresher = new BalanceRefreshService(ingest, balances,
+            Duration.ofMinutes(5), Duration.ofMinutes(1));
+
+    @Test
+    void freshSnapshotDoesNotTouchExchanges() {
+        when(balances.lastSnapshotAt("primary")).thenReturn(Optional.of(Instant.now().minusSeconds(10)));
+
+        assertThat(refresher.refreshIfStale("primary")).isFalse();
+        verifyNoInteractions(ingest);
+    }
+
+    @Test
+    void concurrentRefreshesShareOneRun() throws Exception {
+        when(balances.lastSnapshotAt("primary")).thenReturn(Optional.empty());
+        var release = new CountDownLatch(1);
+        when(ingest.refreshAll(anyString())).thenAnswer(inv -> { release.await(5, TimeUnit.SECONDS); return List.of(); });
+
+        assertThat(refresher.refreshIfStale("primary")).isTrue();
+        var first = refresher.refresh("primary");
+        var second = refresher.refresh("primary");
+        assertThat(second).isSameAs(first);
+
+        release.countDown();
+        first.get(5, TimeUnit.SECONDS);
+        verify(ingest, times(1)).refreshAll("primary");
+    }
+
+    @Test
+    void blankAccountRefreshesTheDefaultOne() throws Exception {
+        when(balances.lastSnapshotAt("primary")).thenReturn(Optional.empty());
+
+        assertThat(refresher.refreshIfStale(" ")).isTrue();
+        refresher.refresh(null).get(5, TimeUnit.SECONDS);
+        verify(ingest, atLeastOnce()).refreshAll("primary");
+    }
+
+    @Test
+    void failedRefreshIsNotRetriedOnEveryView() throws Exception {
+        when(balances.lastSnapshotAt("primary")).thenReturn(Optional.empty());   // fetch never lands a snapshot
+        when(ingest.refreshAll(anyString())).thenThrow(new IllegalStateException("exchange down"));
+
+        refresher.refresh("primary").get(5, TimeUnit.SECONDS);
+
+        assertThat(refresher.refreshIfStale("primary")).isFalse();
+        verify(ingest, times(1)).refreshAll("primary");
+    }
+}
@@ -0,0 +1,99 @@
+package com.sandkev.cryptio.balance;
+
+import com.sandkev.cryptio.ingest.IngestCheckpointDaoImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BalanceRetentionJobTest {
+
+    private static final Instant NOW = Instant.parse("2025-06-01T12:00:00Z");
+
+    private final TimeZone jvmZone = TimeZone.getDefault();
+    private JdbcTemplate jdbc;
+    private long accountId;
+    private long assetId;
+
+    @BeforeEach
+    void schema() {
+        // +05:30: local days and hours both straddle UTC ones
+        TimeZone.setDefault(TimeZone.getTimeZone("Asia/Kolkata"));
+        resetH2Zone();
+        var ds = new DriverManagerDataSource("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        new ResourceDatabasePopulator(
+                new ClassPathResource("db/migration/h2/V1__init.sql"),
+                new ClassPathResource("db/migration/h2/V2__ingest_checkpoint.sql"),
+                new ClassPathResource("db/migration/h2/V10__balance_heartbeat.sql")).execute(ds);
+        jdbc = new JdbcTemplate(ds);
+        var refs = new BalanceRefCache(jdbc);
+        accountId = refs.accountId(refs.exchangeId("binance"), "primary");
+        assetId = refs.assetIds(List.of("BTC")).get("BTC");
+    }
+
+    @AfterEach
+    void restoreZone() {
+        TimeZone.setDefault(jvmZone);
+        resetH2Zone();
+    }
+
+    /** H2 caches the JVM zone on first use (h2 is runtime-only, hence reflection). */
+    private static void resetH2Zone() {
+        try {
+            Class.forName("org.h2.util.DateTimeUtils").getMethod("resetCalendar").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private BalanceRetentionJob job() {
+        return new BalanceRetentionJob(jdbc, new IngestCheckpointDaoImpl(jdbc),
+                Duration.ofDays(7), Duration.ofDays(90), 100);
+    }
+
+    private void snapshot(LocalDateTime localAsOf) {
+        jdbc.update("insert into balance_snapshot (exchange_account_id, asset_id, exchange_symbol, free_amt, as_of) "
+                + "values (?, ?, 'BTC', 1, ?)", accountId, assetId, Timestamp.valueOf(localAsOf));
+    }
+
+    private int snapshots() {
+        return jdbc.queryForObject("select count(*) from balance_snapshot", Integer.class);
+    }
+
+    @Test
+    void dayBucketsFollowTheSessionZone() {
+        snapshot(LocalDateTime.parse("2025-01-10T04:00"));    // 2025-01-09T22:30Z
+        snapshot(LocalDateTime.parse("2025-01-10T10:00"));    // 2025-01-10T04:30Z, same local day
+
+        job().compact(NOW);
+
+        assertThat(snapshots()).isEqualTo(1);
+    }
+
+    @Test
+    void resumesFromTheStoredProgressAfterARestart() {
+        snapshot(LocalDateTime.parse("2025-01-10T04:00"));
+        job().compact(NOW);
+
+        // lands in a day that was already compacted; a fresh job must not rescan it
+        snapshot(LocalDateTime.parse("2025-01-10T05:00"));
+        job().compact(NOW);
+
+        assertThat(snapshots()).isEqualTo(2);
+        assertThat(jdbc.queryForObject("select count(*) from ingest_checkpoint where kind like 'balance-retention-%'",
+                Integer.class)).isEqualTo(2);
+    }
+}
@@ -0,0 +1,78 @@
+package com.sandkev.cryptio.events;
+
+import com.sandkev.cryptio.tx.UpsertOutcome;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ChangeEventsTest {
+
+    private static final Instant T1 = Instant.parse("2024-01-01T00:00:00Z");
+    private static final Instant T2 = Instant.parse("2024-02-01T00:00:00Z");
+
+    private final List<Object> published = new ArrayList<>();
+    private final ChangeEvents events = new ChangeEvents(published::add);
+
+    @Test
+    void publishesImmediatelyOutsideTransaction() {
+        events.txWritten("binance", "main", "BTC", UpsertOutcome.INSERTED, T1, T1);
+        events.txWritten("binance", "main", "ETH", UpsertOutcome.UNCHANGED, T1, T1);
+
+        assertThat(published).containsExactly(new TxChangedEvent(List.of(
+                new TxChangedEvent.TxChange("binance", "main", "BTC", T1, T1, 1, 0))));
+    }
+
+    @Test
+    void batchesPerAssetUntilCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            events.txWritten("binance", "main", "BTC", UpsertOutcome.INSERTED, T2, T2);
+            events.txWritten("binance", "main", "BTC", UpsertOutcome.UPDATED, T1, T2);
+            events.balancesWritten("kraken", "main", List.of("ETH"), T2);
+            assertThat(published).isEmpty();
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(published).containsExactly(
+                new TxChangedEvent(List.of(new TxChangedEvent.TxChange("binance", "main", "BTC", T1, T2, 1, 1))),
+                new BalanceSnapshotEvent("kraken", "main", Set.of("ETH"), T2));
+        assertThat(TransactionSynchronizationManager.getResourceMap()).isEmpty();
+    }
+
+    @Test
+    void batchedScopeCollectsSeveralCommittedTransactions() {
+        var result = events.batched(() -> {
+            for (Instant t : List.of(T1, T2)) {
+                TransactionSynchronizationManager.initSynchronization();
+                try {
+                    events.txWritten("binance", "main", "BTC", UpsertOutcome.INSERTED, t, t);
+                    TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+                    TransactionSynchronizationManager.getSynchronizations()
+                            .forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+                } finally {
+                    TransactionSynchronizationManager.clearSynchronization();
+                }
+            }
+            events.txWritten("binance", "main", "ETH", UpsertOutcome.UPDATED, T1, T1);   // no transaction
+            assertThat(published).isEmpty();
+            return 2;
+        });
+
+        assertThat(result).isEqualTo(2);
+        assertThat(published).containsExactly(new TxChangedEvent(List.of(
+                new TxChangedEvent.TxChange("binance", "main", "BTC", T1, T2, 2, 0),
+                new TxChangedEvent.TxChange("binance", "main", "ETH", T1, T1, 0, 1))));
+    }
+}
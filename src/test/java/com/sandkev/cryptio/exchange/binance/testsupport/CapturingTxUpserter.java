@@ -4,6 +4,7 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sandkev.cryptio.balance.BinanceSignedClient;
 import com.sandkev.cryptio.tx.TxUpserter;
+import com.sandkev.cryptio.tx.UpsertOutcome;
 import org.springframework.core.ParameterizedTypeReference;
 
 import java.io.InputStream;
@@ -22,15 +23,15 @@ public class CapturingTxUpserter implements TxUpserter {
     ){}
     private final List<Tx> calls = new ArrayList<>();
 
-    @Override public int upsert(String exchange, String accountRef, String base, String quote, String type,
-                                BigDecimal quantity, BigDecimal price, BigDecimal fee, String feeAsset,
-                                Instant ts, String externalId) {
+    @Override public UpsertOutcome upsert(String exchange, String accountRef, String base, String quote, String type,
+                                          BigDecimal quantity, BigDecimal price, BigDecimal fee, String feeAsset,
+                                          Instant ts, String externalId) {
 
         if(keys.add(exchange + "." + externalId)) {
             calls.add(new Tx(exchange, accountRef, base, quote, type, quantity, price, fee, feeAsset, ts, externalId));
-            return 1;
+            return UpsertOutcome.INSERTED;
         } else {
-            return 0;
+            return UpsertOutcome.UNCHANGED;
         }
     }
     public List<Tx> calls() { return calls; }
@@ -0,0 +1,103 @@
+package com.sandkev.cryptio.portfolio;
+
+import com.sandkev.cryptio.events.BalanceSnapshotEvent;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class PortfolioSeriesTest {
+
+    private static final Instant NOW = Instant.parse("2025-06-01T12:00:00Z");
+
+    @Test
+    void picksFinestResolutionThatFits() {
+        Instant floor = NOW.minus(Duration.ofDays(2));
+        assertThat(SeriesResolution.forRange(NOW.minus(Duration.ofHours(6)), NOW, 500, floor)).isEqualTo(SeriesResolution.MINUTE);
+        assertThat(SeriesResolution.forRange(NOW.minus(Duration.ofDays(7)), NOW, 500, floor)).isEqualTo(SeriesResolution.HOUR);
+        assertThat(SeriesResolution.forRange(NOW.minus(Duration.ofDays(365 * 3)), NOW, 500, floor)).isEqualTo(SeriesResolution.DAY);
+    }
+
+    @Test
+    void skipsTrimmedMinutes() {
+        Instant floor = NOW.minus(Duration.ofHours(1));
+        assertThat(SeriesResolution.forRange(NOW.minus(Duration.ofHours(3)), NOW, 500, floor)).isEqualTo(SeriesResolution.HOUR);
+    }
+
+    @Test
+    void thinningKeepsCloseAndRunExtremes() {
+        var points = new ArrayList<PortfolioSeriesDao.Point>();
+        for (int i = 0; i < 10; i++) {
+            var v = BigDecimal.valueOf(i);
+            points.add(new PortfolioSeriesDao.Point(NOW.plusSeconds(i), v, v, v));
+        }
+        var thin = PortfolioSeriesDao.thin(points, 4);
+
+        assertThat(thin).hasSize(4);
+        assertThat(thin.getFirst().value()).isEqualByComparingTo("2");
+        assertThat(thin.getFirst().min()).isEqualByComparingTo("0");
+        assertThat(thin.getLast().ts()).isEqualTo(NOW.plusSeconds(9));
+    }
+
+    @Test
+    void backfillWritesOnlyMissingDaysWithFullPrices() {
+        var valuation = mock(PortfolioValuationService.class);
+        var dao = mock(PortfolioSeriesDao.class);
+        var recorder = new PortfolioSeriesRecorder(valuation, dao, mock(BalanceViewDao.class),
+                List.of("gbp"), Duration.ofDays(2), Duration.ofDays(3));
+        Instant today = SeriesResolution.DAY.bucket(NOW);
+        Instant d1 = today.minus(Duration.ofDays(3)), d2 = today.minus(Duration.ofDays(2)), d3 = today.minus(Duration.ofDays(1));
+        var row = List.of(new PortfolioValuationService.BalanceRow("binance", "BTC", "BTC", BigDecimal.ONE));
+        when(dao.buckets("primary", "gbp", SeriesResolution.DAY, d1, today)).thenReturn(Set.of(d1));
+        when(valuation.snapshotAt(eq("primary"), eq("gbp"), any())).thenAnswer(inv -> {
+            Instant at = inv.getArgument(2);
+            var px = at.isBefore(d3) ? Map.<String, BigDecimal>of() : Map.of("BTC", new BigDecimal("50000"));
+            return ValuationSnapshot.of("primary", "gbp", at, row, px, Set.of("BTC"));
+        });
+
+        assertThat(recorder.backfill("primary", "gbp", today)).isEqualTo(1);
+
+        verify(valuation, never()).snapshotAt("primary", "gbp", d2.minusSeconds(1));   // d1 already stored
+        verify(dao).record(eq("primary"), eq("gbp"), eq(today.minusSeconds(1)),
+                argThat(v -> v.compareTo(new BigDecimal("50000")) == 0), eq(EnumSet.of(SeriesResolution.DAY)));
+        verify(dao, never()).record(any(), any(), eq(d3.minusSeconds(1)), any(), any());  // d2 not priced yet
+    }
+
+    @Test
+    void snapshotSamplesOffTheIngestThread() {
+        var valuation = mock(PortfolioValuationService.class);
+        var dao = mock(PortfolioSeriesDao.class);
+        var recorder = new PortfolioSeriesRecorder(valuation, dao, mock(BalanceViewDao.class),
+                List.of("gbp"), Duration.ofDays(2), Duration.ofDays(3));
+        var row = List.of(new PortfolioValuationService.BalanceRow("binance", "BTC", "BTC", BigDecimal.ONE));
+        var sampledOn = new AtomicReference<Thread>();
+        when(valuation.snapshot("primary", "gbp")).thenAnswer(inv -> {
+            sampledOn.set(Thread.currentThread());
+            return ValuationSnapshot.of("primary", "gbp", NOW, row, Map.of("BTC", new BigDecimal("50000")), Set.of("BTC"));
+        });
+
+        try {
+            recorder.onSnapshot(new BalanceSnapshotEvent("binance", "primary", Set.of("BTC"), NOW));
+
+            await().atMost(Duration.ofSeconds(5)).untilAsserted(() -> verify(dao).record(eq("primary"), eq("gbp"), any(),
+                    argThat(v -> v.compareTo(new BigDecimal("50000")) == 0)));
+            assertThat(sampledOn.get()).isNotSameAs(Thread.currentThread());
+        } finally {
+            recorder.shutdown();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.sandkev.cryptio.portfolio;
+
+import com.sandkev.cryptio.events.BalanceSnapshotEvent;
+import com.sandkev.cryptio.price.BinanceTickerPrices;
+import com.sandkev.cryptio.price.CoinGeckoIdResolver;
+import com.sandkev.cryptio.price.CoinGeckoPriceService;
+import com.sandkev.cryptio.price.PriceHistoryService;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class PortfolioValuationServiceTest {
+
+    private final BalanceViewDao balances = mock(BalanceViewDao.class);
+    private final PortfolioValuationService valuation = new PortfolioValuationService(balances,
+            mock(CoinGeckoPriceService.class), mock(BinanceTickerPrices.class), mock(CoinGeckoIdResolver.class),
+            mock(PriceHistoryService.class), Duration.ofMinutes(5));
+
+    @Test
+    void cachedUntilBalancesChange() {
+        when(balances.latest(any(), any())).thenReturn(List.of());
+
+        var first = valuation.snapshot("primary", "gbp");
+        assertThat(valuation.snapshot("primary", "gbp")).isSameAs(first);
+
+        valuation.onBalances(new BalanceSnapshotEvent("binance", "primary", Set.of("BTC"), Instant.now()));
+        assertThat(valuation.snapshot("primary", "gbp")).isNotSameAs(first);
+    }
+
+    @Test
+    void balanceWriteDuringValuationIsNotMaskedByIt() {
+        var racing = new AtomicBoolean(true);
+        when(balances.latest(any(), any())).thenAnswer(inv -> {
+            // the snapshot lands while this valuation is still computing, i.e. before it is cached
+            if (racing.getAndSet(false)) {
+                valuation.onBalances(new BalanceSnapshotEvent("binance", "primary", Set.of("BTC"), Instant.now()));
+            }
+            return List.of();
+        });
+
+        var first = valuation.snapshot("primary", "gbp");
+        var second = valuation.snapshot("primary", "gbp");
+
+        assertThat(second).isNotSameAs(first);
+        verify(balances, times(2)).latest(any(), any());
+    }
+}
@@ -0,0 +1,57 @@
+package com.sandkev.cryptio.portfolio;
+
+import com.sandkev.cryptio.portfolio.PortfolioValuationService.BalanceRow;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ValuationSnapshotTest {
+
+    private final ValuationSnapshot snap = ValuationSnapshot.of("primary", "gbp", List.of(
+            new BalanceRow("binance", "btc", "btc", new BigDecimal("0.5")),
+            new BalanceRow("binance", "DOGE", "DOGE", new BigDecimal("10")),
+            new BalanceRow("kraken", "BTC", "BTC", new BigDecimal("0.25")),
+            new BalanceRow("kraken", "ETH", "ETH", new BigDecimal("2")),
+            new BalanceRow("kraken", null, "XYZ", new BigDecimal("100"))
+    ), Map.of("BTC", new BigDecimal("40000"), "ETH", new BigDecimal("2000"), "DOGE", new BigDecimal("0.1")));
+
+    @Test
+    void totalsCoverEveryPlatform() {
+        assertThat(snap.platformTotals()).extracting(PortfolioValuationService.PlatformTotal::platform)
+                .containsExactly("binance", "kraken");
+        assertThat(snap.grandTotal()).isEqualByComparingTo("34001");
+    }
+
+    @Test
+    void slicesAreFilteredInMemory() {
+        assertThat(snap.topTokens(12, 0.01, null)).extracting(PortfolioValuationService.TokenSlice::asset)
+                .containsExactly("BTC", "ETH");
+        assertThat(snap.topTokens(12, 0.0, "Kraken")).extracting(PortfolioValuationService.TokenSlice::asset)
+                .containsExactly("BTC", "ETH");
+
+        var pie = snap.pie(0.02, "binance");
+        assertThat(pie.labels()).containsExactly("BTC", "OTHER");
+        assertThat(pie.values().getLast()).isEqualByComparingTo("1");
+    }
+
+    @Test
+    void reportsHeldPriceableAssetsWithoutPrice() {
+        var rows = List.of(
+                new BalanceRow("binance", "BTC", "BTC", new BigDecimal("1")),
+                new BalanceRow("binance", "ETH", "ETH", new BigDecimal("2")),
+                new BalanceRow("binance", "SOL", "SOL", BigDecimal.ZERO),
+                new BalanceRow("kraken", "XYZ", "XYZ", new BigDecimal("5")));
+        var partial = ValuationSnapshot.of("primary", "gbp", Instant.now(), rows,
+                Map.of("BTC", new BigDecimal("40000"), "ETH", BigDecimal.ZERO), Set.of("BTC", "ETH", "SOL"));
+
+        assertThat(partial.unpriced()).containsExactly("ETH");     // SOL not held, XYZ has no price source
+        assertThat(partial.complete()).isFalse();
+        assertThat(snap.complete()).isTrue();
+    }
+}
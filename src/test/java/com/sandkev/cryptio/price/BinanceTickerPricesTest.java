@@ -0,0 +1,45 @@
+package com.sandkev.cryptio.price;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BinanceTickerPricesTest {
+
+    private static final Map<String, BigDecimal> TICKERS = Map.of(
+            "BTCUSDT", new BigDecimal("60000"),
+            "BTCGBP", new BigDecimal("47000"),
+            "ETHBTC", new BigDecimal("0.05"),
+            "GBPUSDT", new BigDecimal("1.25"),
+            "USDTTRY", new BigDecimal("32"),
+            "DOTUSDC", new BigDecimal("7"),
+            "USDCUSDT", new BigDecimal("1"));
+
+    @Test
+    void prefersDirectPairThenCrossesThroughUsdt() {
+        var px = BinanceTickerPrices.derive(TICKERS::get, List.of("BTC", "ETH", "DOT.F", "GBP", "NOPE"), "GBP");
+
+        assertThat(px).containsOnlyKeys("BTC", "ETH", "DOT.F", "GBP");
+        assertThat(px.get("BTC")).isEqualByComparingTo("47000");              // BTCGBP
+        assertThat(px.get("ETH")).isEqualByComparingTo("2400");               // 0.05 * 60000 / 1.25
+        assertThat(px.get("DOT.F")).isEqualByComparingTo("5.6");               // 7 * 1 / 1.25
+        assertThat(px.get("GBP")).isEqualByComparingTo("1");
+    }
+
+    @Test
+    void invertsPairsQuotedTheOtherWay() {
+        var px = BinanceTickerPrices.derive(TICKERS::get, List.of("USDT", "BTC"), "TRY");
+
+        assertThat(px.get("USDT")).isEqualByComparingTo("32");                 // USDTTRY
+        assertThat(px.get("BTC")).isEqualByComparingTo("1920000");
+    }
+
+    @Test
+    void nothingWhenVsCannotBeReached() {
+        assertThat(BinanceTickerPrices.derive(TICKERS::get, List.of("ETH"), "JPY")).isEmpty();
+    }
+}
@@ -0,0 +1,79 @@
+package com.sandkev.cryptio.price;
+
+import com.sandkev.cryptio.price.PriceService.CoinInfo;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CoinCatalogueTest {
+
+    @TempDir
+    Path dir;
+
+    private static final List<CoinInfo> COINS = List.of(
+            new CoinInfo("bitcoin", "btc", "Bitcoin"),
+            new CoinInfo("uniswap", "uni", "Uniswap"),
+            new CoinInfo("universe-token", "UNI", "Universe"),
+            new CoinInfo("ethereum", "eth", "Ethereum"),
+            new CoinInfo("ether-fi", "ethfi", "Ether.fi"));
+
+    @Test
+    void symbolLookupAfterReopeningTheFile() throws Exception {
+        var file = dir.resolve("coins.bin").toString();
+        new CoinCatalogue(file).update(COINS);
+
+        var reopened = new CoinCatalogue(file);
+        reopened.open();
+
+        assertThat(reopened.size()).isEqualTo(5);
+        assertThat(reopened.builtAt()).isNotNull();
+        assertThat(reopened.bySymbol("UNI")).extracting(CoinInfo::id).containsExactly("uniswap", "universe-token");
+        assertThat(reopened.bySymbol("eth")).containsExactly(new CoinInfo("ethereum", "eth", "Ethereum"));
+        assertThat(reopened.bySymbol("et")).isEmpty();
+        assertThat(reopened.bySymbol("zzz")).isEmpty();
+        assertThat(reopened).hasSize(5);
+    }
+
+    @Test
+    void rewritesOnlyWhenTheListChanged() throws Exception {
+        var cat = new CoinCatalogue(dir.resolve("coins.bin").toString());
+
+        assertThat(cat.update(COINS)).isEqualTo(new CoinCatalogue.Diff(5, 0, 0));
+        var built = cat.builtAt();
+        assertThat(cat.update(COINS).isEmpty()).isTrue();
+        assertThat(cat.builtAt()).isEqualTo(built);
+
+        var next = List.of(
+                new CoinInfo("bitcoin", "btc", "Bitcoin"),
+                new CoinInfo("uniswap", "uni", "Uniswap Protocol"),
+                new CoinInfo("ethereum", "eth", "Ethereum"),
+                new CoinInfo("ether-fi", "ethfi", "Ether.fi"),
+                new CoinInfo("solana", "sol", "Solana"));
+        assertThat(cat.update(next)).isEqualTo(new CoinCatalogue.Diff(1, 1, 1));
+        assertThat(cat.bySymbol("uni")).containsExactly(new CoinInfo("uniswap", "uni", "Uniswap Protocol"));
+    }
+
+    @Test
+    void truncatedFileIsNotOpened() throws Exception {
+        var file = dir.resolve("coins.bin");
+        new CoinCatalogue(file.toString()).update(COINS);
+        byte[] whole = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(whole, whole.length - 3));
+
+        var reopened = new CoinCatalogue(file.toString());
+        reopened.open();
+
+        assertThat(reopened.size()).isZero();
+        assertThat(reopened.builtAt()).isNull();
+        assertThatThrownBy(() -> CoinCatalogue.View.of(ByteBuffer.wrap(Arrays.copyOf(whole, 40))))
+                .isInstanceOf(IllegalStateException.class);
+    }
+}
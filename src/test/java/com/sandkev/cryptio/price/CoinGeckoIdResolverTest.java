@@ -0,0 +1,88 @@
+package com.sandkev.cryptio.price;
+
+import com.sandkev.cryptio.price.PriceService.CoinInfo;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CoinGeckoIdResolverTest {
+
+    @TempDir
+    Path dir;
+
+    // grouped by symbol, as CoinCatalogue iterates
+    private static final List<CoinInfo> COINS = List.of(
+            new CoinInfo("aca-token", "aca", "ACA Token"),
+            new CoinInfo("acala", "aca", "Acala"),
+            new CoinInfo("near", "near", "NEAR Protocol"),
+            new CoinInfo("pepe", "pepe", "Pepe"),
+            new CoinInfo("wrapped-pepe", "pepe", "Wrapped Pepe"),
+            new CoinInfo("uniswap", "uni", "Uniswap"),
+            new CoinInfo("universe-token", "uni", "Universe"));
+
+    @Test
+    void marketCapRankDecidesSharedSymbols() {
+        var idx = CoinGeckoIdResolver.build(COINS, List.of("near", "universe-token", "uniswap"), Map.of());
+
+        assertThat(idx.get("UNI")).isEqualTo(new CoinGeckoIdResolver.Entry("universe-token", "ranked"));
+        assertThat(idx).doesNotContainKey("NEAR");                  // one coin: left to the catalogue
+    }
+
+    @Test
+    void unrankedDuplicatesResolveOnlyToASolePrimaryCoin() {
+        var idx = CoinGeckoIdResolver.build(COINS, List.of(), Map.of());
+
+        assertThat(idx.get("PEPE")).isEqualTo(new CoinGeckoIdResolver.Entry("pepe", "primary"));
+        assertThat(idx).doesNotContainKey("UNI");                   // two plausible coins: no guess
+    }
+
+    @Test
+    void derivativeMarkersMatchWholeWords() {
+        assertThat(CoinGeckoIdResolver.isDerivative("wrapped-bitcoin")).isTrue();
+        assertThat(CoinGeckoIdResolver.isDerivative("staked-ether")).isTrue();
+        assertThat(CoinGeckoIdResolver.isDerivative("pegaxy-stone")).isFalse();
+        assertThat(CoinGeckoIdResolver.isDerivative("bridge-oracle")).isFalse();
+        assertThat(CoinGeckoIdResolver.isDerivative("unstaked")).isFalse();
+    }
+
+    @Test
+    void overridesWin() {
+        var overrides = CoinGeckoIdResolver.parseOverrides(" aca = acala , bogus, XYZ=");
+        var idx = CoinGeckoIdResolver.build(COINS, List.of("aca-token"), overrides);
+
+        assertThat(overrides).containsOnly(Map.entry("ACA", "acala"));
+        assertThat(idx.get("ACA")).isEqualTo(new CoinGeckoIdResolver.Entry("acala", "override"));
+    }
+
+    @Test
+    void uniqueSymbolsResolveThroughTheCatalogue() throws Exception {
+        var catalogue = new CoinCatalogue(dir.resolve("coins.bin").toString());
+        var prices = mock(PriceService.class);
+        when(prices.getCoinsList()).thenReturn(COINS);
+        when(prices.getMarketCapRanking(anyInt())).thenReturn(List.of("universe-token"));
+        var resolver = new CoinGeckoIdResolver(prices, catalogue, mock(JdbcTemplate.class),
+                mock(PlatformTransactionManager.class), "", Duration.ofDays(1));
+
+        resolver.rebuild();
+
+        assertThat(resolver.resolve("near")).contains("near");
+        assertThat(resolver.resolve("UNI")).contains("universe-token");
+        assertThat(resolver.resolve("ACA")).contains("acala");          // curated override
+        assertThat(resolver.resolve("nope")).isEmpty();
+
+        when(prices.getMarketCapRanking(anyInt())).thenReturn(List.of());
+        resolver.rebuild();
+        assertThat(resolver.resolve("UNI")).isEmpty();                  // shared, unranked: left for curation
+    }
+}
@@ -0,0 +1,99 @@
+package com.sandkev.cryptio.price;
+
+import com.sandkev.cryptio.config.CoinGeckoProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.math.BigDecimal;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+class CoinGeckoPriceServiceCacheTest {
+
+    private static final String BASE = "http://coingecko.test";
+
+    private final List<String> requestedIds = new CopyOnWriteArrayList<>();
+    private volatile int price = 100;
+    private volatile boolean failing;
+    private CoinGeckoPriceService service;
+
+    /** simple/price stub: every requested id gets {@link #price} in every requested vs. */
+    private Mono<ClientResponse> simplePrice(ClientRequest request) {
+        var query = UriComponentsBuilder.fromUri(request.url()).build().getQueryParams();
+        String ids = URLDecoder.decode(query.getFirst("ids"), StandardCharsets.UTF_8);
+        String vs = URLDecoder.decode(query.getFirst("vs_currencies"), StandardCharsets.UTF_8);
+        requestedIds.add(ids);
+        if (failing) return Mono.just(ClientResponse.create(HttpStatus.INTERNAL_SERVER_ERROR).build());
+        String body = List.of(ids.split(",")).stream()
+                .map(id -> "\"" + id + "\":{" + List.of(vs.split(",")).stream()
+                        .map(v -> "\"" + v + "\":" + price)
+                        .collect(Collectors.joining(",")) + "}")
+                .collect(Collectors.joining(",", "{", "}"));
+        return Mono.just(ClientResponse.create(HttpStatus.OK)
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .body(body)
+                .build());
+    }
+
+    private CoinGeckoPriceService service(String ttl) {
+        var http = WebClient.builder().baseUrl(BASE).exchangeFunction(this::simplePrice).build();
+        var props = new CoinGeckoProperties(BASE, null, null, null, 1_000, ttl, 0, 0);
+        return new CoinGeckoPriceService(http, Retry.max(0), props, e -> {}, Duration.ofHours(24),
+                Duration.ofSeconds(5), Duration.ofMillis(1), 250, 2000);
+    }
+
+    @AfterEach
+    void close() {
+        if (service != null) service.shutdown();
+    }
+
+    @Test
+    void cachesPerCoinAndFetchesOnlyNewIds() {
+        service = service("PT10M");
+
+        assertThat(service.getSimplePrice(Set.of("bitcoin"), "GBP")).containsOnlyKeys("bitcoin");
+        var both = service.getSimplePrice(Set.of("bitcoin", "ethereum"), "gbp");
+        service.getSimplePrice(Set.of("ethereum", "bitcoin"), "gbp");
+
+        assertThat(both).containsOnlyKeys("bitcoin", "ethereum");
+        assertThat(requestedIds).containsExactly("bitcoin", "ethereum");
+    }
+
+    @Test
+    void failedReloadKeepsServingTheOldPriceAndRefreshReplacesIt() throws Exception {
+        service = service("PT0.2S");
+        assertThat(service.getSimplePrice(Set.of("bitcoin"), "gbp").get("bitcoin")).isEqualByComparingTo("100");
+
+        failing = true;
+        Thread.sleep(300);
+        // past ttl: served stale while the background reload runs and fails
+        assertThat(service.getSimplePrice(Set.of("bitcoin"), "gbp").get("bitcoin")).isEqualByComparingTo("100");
+        await().atMost(Duration.ofSeconds(5)).until(() -> requestedIds.size() == 2);
+        assertThat(service.getSimplePrice(Set.of("bitcoin"), "gbp").get("bitcoin")).isEqualByComparingTo("100");
+
+        failing = false;
+        price = 120;
+        Thread.sleep(300);
+        await().atMost(Duration.ofSeconds(5)).untilAsserted(() ->
+                assertThat(service.getSimplePrice(Set.of("bitcoin"), "gbp"))
+                        .extractingByKey("bitcoin").satisfies(p -> assertThat(p).isEqualByComparingTo("120")));
+    }
+}
@@ -0,0 +1,53 @@
+package com.sandkev.cryptio.price;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PriceBookTest {
+
+    @Test
+    void keepsNewestTickPerSymbol() {
+        var book = new PriceBook();
+        assertThat(book.updatedAt()).isNull();
+
+        book.apply(new PriceBook.PriceTick("BTCUSDT", new BigDecimal("60000"), 2_000));
+        book.apply(new PriceBook.PriceTick("BTCUSDT", new BigDecimal("59000"), 1_000));   // late, ignored
+        book.apply(new PriceBook.PriceTick("ETHUSDT", BigDecimal.ZERO, 3_000));            // delisted, ignored
+
+        assertThat(book.price("BTCUSDT")).isEqualByComparingTo("60000");
+        assertThat(book.price("ETHUSDT")).isNull();
+        assertThat(book.size()).isEqualTo(1);
+        assertThat(book.updatedAt()).isNotNull();
+    }
+
+    @Test
+    void dropsTicksReceivedBeforeTheCutoffAndForgetsEverythingOnClear() {
+        var book = new PriceBook();
+        book.apply(new PriceBook.PriceTick("BTCUSDT", new BigDecimal("60000"), 1_000));
+
+        assertThat(book.price("BTCUSDT", Instant.now().minusSeconds(60))).isEqualByComparingTo("60000");
+        assertThat(book.price("BTCUSDT", Instant.now().plusSeconds(1))).isNull();   // e.g. older than a REST snapshot
+
+        book.clear();
+        assertThat(book.price("BTCUSDT")).isNull();
+        assertThat(book.size()).isZero();
+        assertThat(book.updatedAt()).isNull();
+    }
+
+    @Test
+    void parsesCombinedMiniTickerFrame() {
+        var ticks = BinanceMiniTickerFeed.parse("""
+                {"stream":"!miniTicker@arr","data":[
+                  {"e":"24hrMiniTicker","E":1700000000000,"s":"BTCUSDT","c":"37000.10","o":"36000","h":"1","l":"1","v":"1","q":"1"},
+                  {"e":"24hrMiniTicker","E":1700000000000,"s":"ETHBTC","c":"0.0551"}
+                ]}""");
+
+        assertThat(ticks).containsExactly(
+                new PriceBook.PriceTick("BTCUSDT", new BigDecimal("37000.10"), 1_700_000_000_000L),
+                new PriceBook.PriceTick("ETHBTC", new BigDecimal("0.0551"), 1_700_000_000_000L));
+    }
+}
@@ -0,0 +1,88 @@
+package com.sandkev.cryptio.price;
+
+import com.sandkev.cryptio.events.PricesRefreshedEvent;
+import com.sandkev.cryptio.price.PriceService.PricePoint;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class PriceHistoryServiceTest {
+
+    private static final Instant LAST = Instant.parse("2024-03-01T10:00:00Z");
+    private static final Instant BACKFILLED = Instant.parse("2024-01-01T00:00:00Z");
+
+    private final PriceHistoryDao dao = mock(PriceHistoryDao.class);
+    private final PriceService prices = mock(PriceService.class);
+    private final PriceHistoryService history = new PriceHistoryService(dao, prices,
+            Duration.ofDays(365), Duration.ofDays(90), Duration.ofDays(3), Duration.ZERO);
+
+    private static PricePoint p(Instant ts, int price) {
+        return new PricePoint(ts, BigDecimal.valueOf(price));
+    }
+
+    @Test
+    void firstSyncBackfillsDailyThenHourlyWindow() {
+        var daily = p(Instant.parse("2023-06-01T00:00:00Z"), 100);
+        var hourly = p(Instant.parse("2024-02-01T05:00:00Z"), 200);
+        when(prices.getMarketChart(eq("bitcoin"), eq("usd"), any(), any()))
+                .thenReturn(List.of(daily), List.of(hourly));
+
+        Instant before = Instant.now();
+        history.sync(new PriceHistoryDao.State("bitcoin", "usd", null, null));
+
+        var from = ArgumentCaptor.forClass(Instant.class);
+        var to = ArgumentCaptor.forClass(Instant.class);
+        verify(prices, times(2)).getMarketChart(eq("bitcoin"), eq("usd"), from.capture(), to.capture());
+        assertThat(Duration.between(from.getAllValues().get(0), to.getAllValues().get(0))).isEqualTo(Duration.ofDays(275));
+        assertThat(from.getAllValues().get(1)).isEqualTo(to.getAllValues().get(0));
+        assertThat(Duration.between(from.getAllValues().get(1), to.getAllValues().get(1))).isEqualTo(Duration.ofDays(90));
+
+        verify(dao).append("bitcoin", "usd", List.of(daily, hourly));
+        var backfilledAt = ArgumentCaptor.forClass(Instant.class);
+        verify(dao).saveState(eq("bitcoin"), eq("usd"), backfilledAt.capture(), eq(hourly.ts()));
+        assertThat(backfilledAt.getValue()).isAfterOrEqualTo(before);
+    }
+
+    @Test
+    void laterSyncAppendsFromLastPointAndAdvancesCursor() {
+        var next = p(LAST.plusSeconds(3600), 300);
+        when(prices.getMarketChart(eq("bitcoin"), eq("usd"), eq(LAST), any())).thenReturn(List.of(next));
+
+        history.sync(new PriceHistoryDao.State("bitcoin", "usd", BACKFILLED, LAST));
+
+        verify(prices, times(1)).getMarketChart(eq("bitcoin"), eq("usd"), any(), any());
+        verify(dao).append("bitcoin", "usd", List.of(next));
+        verify(dao).saveState("bitcoin", "usd", BACKFILLED, next.ts());
+    }
+
+    @Test
+    void emptyAppendKeepsCursor() {
+        when(prices.getMarketChart(any(), any(), any(), any())).thenReturn(List.of());
+
+        history.sync(new PriceHistoryDao.State("bitcoin", "usd", BACKFILLED, LAST));
+
+        verify(dao).saveState("bitcoin", "usd", BACKFILLED, LAST);
+    }
+
+    @Test
+    void pricedPairsAreOnlyPersistedBySync() {
+        history.onPrices(new PricesRefreshedEvent(Set.of("bitcoin"), Set.of("usd"), Instant.now()));
+        verifyNoInteractions(dao);
+
+        when(dao.tracked()).thenReturn(List.of());
+        history.syncNow();
+        history.syncNow();
+
+        verify(dao, times(1)).track("bitcoin", "usd");
+    }
+}
@@ -0,0 +1,43 @@
+package com.sandkev.cryptio.price;
+
+import com.sandkev.cryptio.price.PriceService.PricePoint;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PriceSeriesTest {
+
+    private static final Instant D1 = Instant.parse("2024-01-01T00:00:00Z");
+    private static final Instant D2 = Instant.parse("2024-01-02T00:00:00Z");
+    private static final Instant D3 = Instant.parse("2024-01-03T00:00:00Z");
+
+    private static PricePoint p(Instant ts, int price) {
+        return new PricePoint(ts, BigDecimal.valueOf(price));
+    }
+
+    @Test
+    void asOfReturnsLatestPointAtOrBefore() {
+        var s = PriceSeries.of(List.of(p(D1, 100), p(D2, 110), p(D3, 120)));
+
+        assertThat(s.asOf(D1.minusSeconds(1))).isEmpty();
+        assertThat(s.asOf(D1)).contains(p(D1, 100));
+        assertThat(s.asOf(D2.plusSeconds(3600))).contains(p(D2, 110));
+        assertThat(s.asOf(D3.plusSeconds(86_400 * 10))).contains(p(D3, 120));
+    }
+
+    @Test
+    void plusSkipsOverlapAndKeepsOriginalUntouched() {
+        var s = PriceSeries.of(List.of(p(D1, 100), p(D2, 110)));
+        var t = s.plus(List.of(p(D2, 999), p(D3, 120)));
+
+        assertThat(s.size()).isEqualTo(2);
+        assertThat(t.size()).isEqualTo(3);
+        assertThat(t.asOf(D2)).contains(p(D2, 110));
+        assertThat(t.last()).contains(D3);
+        assertThat(t.plus(List.of(p(D1, 1)))).isSameAs(t);
+    }
+}
@@ -0,0 +1,70 @@
+package com.sandkev.cryptio.price;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.socket.client.ReactorNettyWebSocketClient;
+import reactor.core.publisher.Flux;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+/** Runs the Binance feed and the stream service against a local WebSocket stub that hangs up after one frame. */
+class PriceStreamServiceTest {
+
+    private final AtomicInteger connections = new AtomicInteger();
+    private DisposableServer server;
+    private PriceStreamService stream;
+
+    @BeforeEach
+    void startStub() {
+        server = HttpServer.create().host("localhost").port(0)
+                .route(r -> r.ws("/stream", (in, out) -> {
+                    int n = connections.incrementAndGet();
+                    String pair = n == 1 ? "BTCUSDT" : "ETHUSDT";
+                    return out.sendString(Flux.just("""
+                            {"stream":"!miniTicker@arr","data":[{"e":"24hrMiniTicker","E":%d,"s":"%s","c":"%d"}]}"""
+                            .formatted(1_700_000_000_000L + n, pair, 1000 * n))).then();
+                }))
+                .bindNow();
+    }
+
+    @AfterEach
+    void stop() {
+        if (stream != null) stream.stop();
+        server.disposeNow();
+    }
+
+    private BinanceMiniTickerFeed feed() {
+        return new BinanceMiniTickerFeed(new ReactorNettyWebSocketClient(),
+                URI.create("ws://localhost:" + server.port() + "/stream"));
+    }
+
+    @Test
+    void connectEmitsTicksUntilTheServerCloses() {
+        var ticks = feed().connect().collectList().block(Duration.ofSeconds(5));
+
+        assertThat(ticks).extracting(PriceBook.PriceTick::symbol).containsExactly("BTCUSDT");
+        assertThat(ticks.getFirst().price()).isEqualByComparingTo("1000");
+    }
+
+    @Test
+    void reconnectsAndStartsFromAnEmptyBook() {
+        var book = new PriceBook();
+        stream = new PriceStreamService(feed(), book, true, Duration.ofSeconds(1));
+        stream.start();
+
+        await().atMost(Duration.ofSeconds(10)).untilAsserted(() -> {
+            assertThat(connections.get()).isGreaterThanOrEqualTo(2);
+            assertThat(book.price("ETHUSDT")).isNotNull();
+        });
+        // the first connection's price did not outlive it
+        assertThat(book.price("BTCUSDT")).isNull();
+    }
+}
@@ -0,0 +1,89 @@
+package com.sandkev.cryptio.price;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SimplePriceBatcherTest {
+
+    private final List<List<String>> calls = new CopyOnWriteArrayList<>();
+    private SimplePriceBatcher batcher;
+
+    private CompletableFuture<Map<String, Map<String, BigDecimal>>> echo(List<String> ids, List<String> vs) {
+        calls.add(ids);
+        var out = new HashMap<String, Map<String, BigDecimal>>();
+        for (String id : ids) {
+            var inner = new HashMap<String, BigDecimal>();
+            for (String v : vs) inner.put(v, BigDecimal.valueOf(id.length()));
+            out.put(id, inner);
+        }
+        return CompletableFuture.completedFuture(out);
+    }
+
+    @AfterEach
+    void close() {
+        if (batcher != null) batcher.close();
+    }
+
+    @Test
+    void concurrentCallersShareOneUpstreamCall() {
+        batcher = new SimplePriceBatcher(this::echo, Duration.ofMillis(50), 250, 2000);
+
+        var a = batcher.submit(Set.of("bitcoin"), Set.of("gbp"));
+        var b = batcher.submit(Set.of("ethereum", "bitcoin"), Set.of("usd"));
+
+        assertThat(a.join()).isEqualTo(Map.of("bitcoin", Map.of("gbp", BigDecimal.valueOf(7))));
+        assertThat(b.join()).isEqualTo(Map.of(
+                "bitcoin", Map.of("usd", BigDecimal.valueOf(7)),
+                "ethereum", Map.of("usd", BigDecimal.valueOf(8))));
+        assertThat(batcher.upstreamCalls()).isEqualTo(1);
+        assertThat(calls).containsExactly(List.of("bitcoin", "ethereum"));
+    }
+
+    @Test
+    void chunksByIdCountAndUrlLength() {
+        batcher = new SimplePriceBatcher(this::echo, Duration.ofMillis(1), 3, 2000);
+        var ids = new TreeSet<>(List.of("a", "b", "c", "d", "e"));
+        assertThat(batcher.chunk(ids, 3)).containsExactly(List.of("a", "b", "c"), List.of("d", "e"));
+
+        // budget left for ids = 33 (fixed) + 3 (vs) + 9 -> "aaaa,bbbb" fits, a third id does not
+        batcher = new SimplePriceBatcher(this::echo, Duration.ofMillis(1), 100, 33 + 3 + 9);
+        var longer = new TreeSet<>(List.of("aaaa", "bbbb", "cccc"));
+        assertThat(batcher.chunk(longer, 3)).containsExactly(List.of("aaaa", "bbbb"), List.of("cccc"));
+    }
+
+    @Test
+    void upstreamFailureFailsEveryCallerInTheBatch() {
+        batcher = new SimplePriceBatcher((ids, vs) -> CompletableFuture.failedFuture(new IllegalStateException("429")),
+                Duration.ofMillis(20), 250, 2000);
+
+        var a = batcher.submit(Set.of("bitcoin"), Set.of("gbp"));
+        var b = batcher.submit(Set.of("ethereum"), Set.of("gbp"));
+
+        assertThatThrownBy(a::join).hasRootCauseInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(b::join).hasRootCauseInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void failedChunkFailsOnlyTheCallersWhoseIdsItHeld() {
+        // one id per chunk; the ethereum call fails
+        batcher = new SimplePriceBatcher((ids, vs) -> ids.contains("ethereum")
+                ? CompletableFuture.failedFuture(new IllegalStateException("429"))
+                : echo(ids, vs), Duration.ofMillis(20), 1, 2000);
+
+        var a = batcher.submit(Set.of("bitcoin"), Set.of("gbp"));
+        var b = batcher.submit(Set.of("ethereum", "bitcoin"), Set.of("gbp"));
+
+        assertThat(a.join()).isEqualTo(Map.of("bitcoin", Map.of("gbp", BigDecimal.valueOf(7))));
+        assertThatThrownBy(b::join).hasRootCauseInstanceOf(IllegalStateException.class);
+        assertThat(batcher.upstreamCalls()).isEqualTo(2);
+    }
+}
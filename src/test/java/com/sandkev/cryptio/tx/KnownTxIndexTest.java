@@ -0,0 +1,78 @@
+package com.sandkev.cryptio.tx;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class KnownTxIndexTest {
+
+    private static final Instant TS = Instant.parse("2024-01-02T03:04:05Z");
+
+    // empty tx table: the warm-up query callback is never invoked
+    private final KnownTxIndex index = new KnownTxIndex(mock(JdbcTemplate.class));
+
+    @Test
+    void unknownRowsAreNeverSkipped() {
+        long h = TxRowHash.of(new BigDecimal("1"), new BigDecimal("42000"), BigDecimal.ZERO, "BNB", TS);
+        assertThat(index.isUnchanged("binance", "trade:BTCUSDT:10", h)).isFalse();
+    }
+
+    @Test
+    void recordedRowWithSameHashIsUnchanged() {
+        long h = TxRowHash.of(new BigDecimal("1"), new BigDecimal("42000"), BigDecimal.ZERO, "BNB", TS);
+        index.record("binance", "trade:BTCUSDT:10", h);
+        index.record("binance", "deposit:BTC:0xabc:1700000000000", h);
+
+        assertThat(index.isUnchanged("binance", "trade:BTCUSDT:10", h)).isTrue();
+        assertThat(index.isUnchanged("binance", "deposit:BTC:0xabc:1700000000000", h)).isTrue();
+        assertThat(index.isUnchanged("binance", "trade:ETHUSDT:10", h)).isFalse();
+        assertThat(index.isUnchanged("kraken", "trade:BTCUSDT:10", h)).isFalse();
+    }
+
+    @Test
+    void changedEconomicsAreNotSkipped() {
+        index.record("binance", "withdraw:7",
+                TxRowHash.of(new BigDecimal("2"), null, new BigDecimal("0.1"), "ETH", TS));
+        long changedFee = TxRowHash.of(new BigDecimal("2"), null, new BigDecimal("0.2"), "ETH", TS);
+        assertThat(index.isUnchanged("binance", "withdraw:7", changedFee)).isFalse();
+    }
+
+    @Test
+    void hashIgnoresNumericScale() {
+        assertThat(TxRowHash.of(new BigDecimal("1.5"), null, BigDecimal.ZERO, null, TS))
+                .isEqualTo(TxRowHash.of(new BigDecimal("1.500000000000000000"), null, new BigDecimal("0E-18"), null, TS));
+    }
+
+    @Test
+    void leadingZeroIdsStayDistinct() {
+        long h = TxRowHash.of(BigDecimal.ONE, null, null, null, TS);
+        index.record("binance", "withdraw:007", h);
+        assertThat(index.isUnchanged("binance", "withdraw:7", h)).isFalse();
+        assertThat(index.isUnchanged("binance", "withdraw:007", h)).isTrue();
+    }
+
+    @Test
+    void idsBeyondThePrimitiveRangeStillMatchExactly() {
+        long h = TxRowHash.of(BigDecimal.ONE, null, null, null, TS);
+        index.record("binance", "convert:in:98765432109876543", h);
+        index.record("binance", "deposit:BTC:0xdef:1700000000000", h);
+
+        assertThat(index.isUnchanged("binance", "convert:in:98765432109876543", h)).isTrue();
+        assertThat(index.isUnchanged("binance", "convert:in:98765432109876542", h)).isFalse();
+        assertThat(index.isUnchanged("binance", "deposit:BTC:0xabc:1700000000000", h)).isFalse();
+    }
+
+    @Test
+    void invalidateForgetsRecordedRows() {
+        long h = TxRowHash.of(BigDecimal.ONE, null, null, null, TS);
+        index.record("binance", "withdraw:7", h);
+        index.invalidate("binance");
+
+        assertThat(index.isUnchanged("binance", "withdraw:7", h)).isFalse();
+    }
+}
@@ -0,0 +1,29 @@
+package com.sandkev.cryptio.tx;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TxCursorTest {
+
+    @Test
+    void roundTripsTimestampWithNanosAndId() {
+        var c = new TxCursor(Instant.parse("2024-03-01T12:34:56.123456789Z"), 42L);
+        assertThat(TxCursor.decode(c.encode())).isEqualTo(c);
+    }
+
+    @Test
+    void blankMeansFirstPage() {
+        assertThat(TxCursor.decode(null)).isEqualTo(TxCursor.START);
+        assertThat(TxCursor.decode(" ")).isEqualTo(TxCursor.START);
+    }
+
+    @Test
+    void rejectsGarbage() {
+        assertThatThrownBy(() -> TxCursor.decode("not-a-cursor"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
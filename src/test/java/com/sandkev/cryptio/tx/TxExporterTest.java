@@ -0,0 +1,95 @@
+package com.sandkev.cryptio.tx;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TxExporterTest {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final Instant T1 = Instant.parse("2024-01-02T03:04:05Z");
+    private static final Instant T2 = Instant.parse("2024-02-02T03:04:05Z");
+    private static final Instant T3 = Instant.parse("2024-03-02T03:04:05Z");
+
+    private TxExporter exporter;
+
+    @BeforeEach
+    void schema() {
+        var ds = new DriverManagerDataSource("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        new ResourceDatabasePopulator(
+                new ClassPathResource("db/migration/h2/V1__init.sql"),
+                new ClassPathResource("db/migration/h2/V2__ingest_checkpoint.sql")).execute(ds);
+        var jdbc = new JdbcTemplate(ds);
+        insert(jdbc, "binance", "primary", "BTC", "BUY", "1.5", "40000", T1, "trade:1");
+        insert(jdbc, "binance", "primary", "ETH", "SELL", "2", null, T2, "note, with \"quotes\"");
+        insert(jdbc, "binance", "other", "BTC", "BUY", "3", "41000", T2, "trade:3");
+        insert(jdbc, "kraken", "primary", "BTC", "BUY", "4", "42000", T3, "trade:4");
+        exporter = new TxExporter(jdbc, new DataSourceTransactionManager(ds), JSON);
+    }
+
+    private static void insert(JdbcTemplate jdbc, String exchange, String account, String base, String type,
+                               String qty, String price, Instant ts, String externalId) {
+        jdbc.update("""
+            insert into tx (exchange, account_ref, base, quote, type, quantity, price, ts, external_id)
+            values (?, ?, ?, 'USDT', ?, ?, ?, ?, ?)
+            """, exchange, account, base, type, new BigDecimal(qty), price == null ? null : new BigDecimal(price),
+                Timestamp.from(ts), externalId);
+    }
+
+    private String export(TxExporter.Filter f, TxExporter.Format format) {
+        var out = new ByteArrayOutputStream();
+        exporter.export(f, format, out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void csvHasHeaderAndQuotesFieldsThatNeedIt() {
+        var lines = export(new TxExporter.Filter(null, "primary", null, null, null, null), TxExporter.Format.CSV)
+                .split("\n");
+
+        assertThat(lines[0]).isEqualTo("id,ts,exchange,accountRef,asset,quote,type,qty,price,fee,feeAsset,externalId");
+        assertThat(lines).hasSize(4);                                          // header + the three primary rows
+        assertThat(lines[1]).endsWith(",2024-01-02T03:04:05Z,binance,primary,BTC,USDT,BUY,1.500000000000000000,"
+                + "40000.000000000000000000,,,trade:1");
+        assertThat(lines[2]).endsWith(",ETH,USDT,SELL,2.000000000000000000,,,,\"note, with \"\"quotes\"\"\"");
+        assertThat(lines[3]).contains(",kraken,primary,BTC,");
+    }
+
+    @Test
+    void filtersByExchangeAssetTypeAndHalfOpenRange() {
+        var csv = export(new TxExporter.Filter(" Binance ", null, "btc", "buy", T1, T3), TxExporter.Format.CSV);
+
+        assertThat(csv.lines().skip(1)).hasSize(2)
+                .allSatisfy(l -> assertThat(l).contains(",binance,").contains(",BTC,"));
+        assertThat(export(new TxExporter.Filter(null, null, null, null, T1, T2), TxExporter.Format.CSV).lines().skip(1))
+                .singleElement().asString().endsWith(",trade:1");               // to is exclusive
+    }
+
+    @Test
+    void ndjsonWritesOneObjectPerLine() throws Exception {
+        var lines = export(new TxExporter.Filter("binance", "primary", null, null, null, null), TxExporter.Format.NDJSON)
+                .split("\n");
+
+        assertThat(lines).hasSize(2);
+        var first = JSON.readTree(lines[0]);
+        assertThat(first.get("ts").asText()).isEqualTo("2024-01-02T03:04:05Z");
+        assertThat(first.get("qty").decimalValue()).isEqualByComparingTo("1.5");
+        var second = JSON.readTree(lines[1]);
+        assertThat(second.get("price").isNull()).isTrue();
+        assertThat(second.get("externalId").asText()).isEqualTo("note, with \"quotes\"");
+    }
+}
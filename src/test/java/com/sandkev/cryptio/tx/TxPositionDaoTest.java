@@ -0,0 +1,93 @@
+package com.sandkev.cryptio.tx;
+
+import com.sandkev.cryptio.events.ChangeEvents;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TxPositionDaoTest {
+
+    private static final Instant T1 = Instant.parse("2024-01-02T03:04:05Z");
+    private static final Instant T2 = Instant.parse("2024-02-02T03:04:05Z");
+
+    private JdbcTemplate jdbc;
+    private TxPositionDao positions;
+    private TxWriterImpl writer;
+
+    @BeforeEach
+    void schema() {
+        var ds = new DriverManagerDataSource("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        new ResourceDatabasePopulator(
+                new ClassPathResource("db/migration/h2/V1__init.sql"),
+                new ClassPathResource("db/migration/h2/V2__ingest_checkpoint.sql"),
+                new ClassPathResource("db/migration/h2/V4__canonical_exchange.sql"),
+                new ClassPathResource("db/migration/h2/V6__tx_position.sql"),
+                new ClassPathResource("db/migration/h2/V7__tx_row_hash.sql")).execute(ds);
+        jdbc = new JdbcTemplate(ds);
+        positions = new TxPositionDao(jdbc);
+        writer = new TxWriterImpl(jdbc, positions, new KnownTxIndex(jdbc), new ChangeEvents(e -> {}));
+    }
+
+    private Map<String, TxPositionDao.Position> byAsset() {
+        return positions.positions("binance", "primary").stream()
+                .collect(Collectors.toMap(TxPositionDao.Position::asset, p -> p));
+    }
+
+    @Test
+    void applyThenUndoLeavesTheRowAtZero() {
+        positions.apply("binance", "primary", "BTC", new BigDecimal("1.5"), BigDecimal.ZERO, T1, 1);
+        positions.apply("binance", "primary", "BTC", new BigDecimal("-0.5"), new BigDecimal("0.01"), T2, 1);
+
+        var btc = byAsset().get("BTC");
+        assertThat(btc.netQty()).isEqualByComparingTo("1.0");
+        assertThat(btc.feeTotal()).isEqualByComparingTo("0.01");
+        assertThat(btc.lastTs()).isEqualTo(T2);
+        assertThat(btc.rowCount()).isEqualTo(2);
+
+        positions.apply("binance", "primary", "BTC", new BigDecimal("-1.0"), new BigDecimal("-0.01"), T1, -2);
+        btc = byAsset().get("BTC");
+        assertThat(btc.netQty()).isZero();
+        assertThat(btc.feeTotal()).isZero();
+        assertThat(btc.rowCount()).isZero();
+    }
+
+    @Test
+    void updatedTxMovesThePositionAndRebuildAgreesWithIt() {
+        writer.upsert("Binance", "primary", "BTC", "USDT", "BUY", new BigDecimal("2"), new BigDecimal("40000"),
+                new BigDecimal("5"), "USDT", T1, "trade:BTCUSDT:1");
+        writer.upsert("binance", "primary", "BTC", "USDT", "SELL", new BigDecimal("0.5"), new BigDecimal("42000"),
+                new BigDecimal("0.001"), "BTC", T2, "trade:BTCUSDT:2");
+        // the exchange corrected the first fill: the old contribution is undone, the new one applied
+        writer.upsert("binance", "primary", "BTC", "USDT", "BUY", new BigDecimal("3"), new BigDecimal("40000"),
+                new BigDecimal("5"), "USDT", T1, "trade:BTCUSDT:1");
+
+        var incremental = byAsset();
+        assertThat(incremental.get("BTC").netQty()).isEqualByComparingTo("2.5");
+        assertThat(incremental.get("BTC").feeTotal()).isEqualByComparingTo("0.001");
+        assertThat(incremental.get("BTC").rowCount()).isEqualTo(2);
+        assertThat(incremental.get("USDT").feeTotal()).isEqualByComparingTo("5");
+
+        jdbc.update("update tx_position set net_qty = 99");     // drift, e.g. a manual SQL fix
+        assertThat(positions.rebuild()).isEqualTo(2);
+
+        var rebuilt = byAsset();
+        assertThat(rebuilt.keySet()).isEqualTo(incremental.keySet());
+        incremental.forEach((asset, p) -> {
+            assertThat(rebuilt.get(asset).netQty()).isEqualByComparingTo(p.netQty());
+            assertThat(rebuilt.get(asset).feeTotal()).isEqualByComparingTo(p.feeTotal());
+            assertThat(rebuilt.get(asset).rowCount()).isEqualTo(p.rowCount());
+            assertThat(rebuilt.get(asset).lastTs()).isEqualTo(p.lastTs());
+        });
+    }
+}
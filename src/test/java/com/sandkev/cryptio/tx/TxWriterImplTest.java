@@ -0,0 +1,114 @@
+package com.sandkev.cryptio.tx;
+
+import com.sandkev.cryptio.events.ChangeEvents;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TxWriterImplTest {
+
+    private static final Instant TS = Instant.parse("2024-01-02T03:04:05Z");
+
+    /** Records every statement sent through update(sql, args...). */
+    private static final class RecordingJdbc extends JdbcTemplate {
+        final List<String> updates = new CopyOnWriteArrayList<>();
+
+        RecordingJdbc(DriverManagerDataSource ds) { super(ds); }
+
+        @Override
+        public int update(String sql, Object... args) throws DataAccessException {
+            updates.add(sql.strip());
+            return super.update(sql, args);
+        }
+
+        long txUpdates() {
+            return updates.stream().filter(s -> s.startsWith("update tx")).count();
+        }
+    }
+
+    private RecordingJdbc jdbc;
+    private final KnownTxIndex neverKnown = mock(KnownTxIndex.class);   // forces every upsert to the database
+
+    @BeforeEach
+    void schema() {
+        var ds = new DriverManagerDataSource("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        new ResourceDatabasePopulator(
+                new ClassPathResource("db/migration/h2/V1__init.sql"),
+                new ClassPathResource("db/migration/h2/V2__ingest_checkpoint.sql"),
+                new ClassPathResource("db/migration/h2/V4__canonical_exchange.sql"),
+                new ClassPathResource("db/migration/h2/V6__tx_position.sql"),
+                new ClassPathResource("db/migration/h2/V7__tx_row_hash.sql")).execute(ds);
+        jdbc = new RecordingJdbc(ds);
+        when(neverKnown.isUnchanged(any(), any(), anyLong())).thenReturn(false);
+    }
+
+    private TxWriterImpl writer(KnownTxIndex known) {
+        return new TxWriterImpl(jdbc, new TxPositionDao(jdbc), known, new ChangeEvents(e -> {}));
+    }
+
+    private static UpsertOutcome buy(TxWriterImpl w, String qty, String fee) {
+        return w.upsert("binance", "primary", "BTC", "USDT", "BUY", new BigDecimal(qty), new BigDecimal("40000"),
+                new BigDecimal(fee), "USDT", TS, "trade:BTCUSDT:1");
+    }
+
+    @Test
+    void insertThenUnchangedThenUpdated() {
+        var w = writer(neverKnown);
+
+        assertThat(buy(w, "1", "0.5")).isEqualTo(UpsertOutcome.INSERTED);
+
+        jdbc.updates.clear();
+        assertThat(buy(w, "1.000", "0.50")).isEqualTo(UpsertOutcome.UNCHANGED);   // same value, other scale
+        assertThat(jdbc.updates).isEmpty();                                      // row_hash matched: no write at all
+
+        assertThat(buy(w, "1", "0.6")).isEqualTo(UpsertOutcome.UPDATED);
+        assertThat(jdbc.txUpdates()).isEqualTo(1);
+        assertThat(jdbc.queryForObject("select fee from tx where external_id='trade:BTCUSDT:1'", BigDecimal.class))
+                .isEqualByComparingTo("0.6");
+        assertThat(jdbc.queryForObject("select count(*) from tx", Integer.class)).isEqualTo(1);
+    }
+
+    @Test
+    void knownRowSkipsTheDatabase() {
+        var w = writer(new KnownTxIndex(jdbc));
+        assertThat(buy(w, "1", "0.5")).isEqualTo(UpsertOutcome.INSERTED);
+
+        jdbc.updates.clear();
+        assertThat(buy(w, "1", "0.5")).isEqualTo(UpsertOutcome.UNCHANGED);
+        assertThat(jdbc.updates).isEmpty();
+    }
+
+    @Test
+    void rowWithoutHashGetsItOnceWithoutRewritingFields() {
+        jdbc.update("""
+            insert into tx (exchange, account_ref, base, quote, type, quantity, price, fee, fee_asset, ts, external_id)
+            values ('binance', 'primary', 'BTC', 'USDT', 'BUY', 1, 40000, 0.5, 'USDT', ?, 'trade:BTCUSDT:1')
+            """, Timestamp.from(TS));
+        var w = writer(neverKnown);
+
+        jdbc.updates.clear();
+        assertThat(buy(w, "1", "0.5")).isEqualTo(UpsertOutcome.UNCHANGED);
+        assertThat(jdbc.updates).singleElement().asString().contains("set row_hash=?");
+        assertThat(jdbc.queryForObject("select row_hash from tx", Long.class)).isNotNull();
+
+        jdbc.updates.clear();
+        assertThat(buy(w, "1", "0.5")).isEqualTo(UpsertOutcome.UNCHANGED);
+        assertThat(jdbc.updates).isEmpty();
+    }
+}